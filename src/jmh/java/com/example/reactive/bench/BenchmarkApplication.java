@@ -0,0 +1,85 @@
+package com.example.reactive.bench;
+
+import com.example.reactive.ReactiveApplication;
+import com.example.reactive.core.repository.RepositoryWithDatabaseClient;
+import com.example.reactive.core.repository.Student;
+import io.r2dbc.spi.ConnectionFactory;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Приложение для бенчмарков: встроенный Postgres, на нем прогоняются миграции Liquibase,
+ * и поверх поднимается обычный Spring-контекст, только без веб-сервера.
+ */
+final class BenchmarkApplication implements AutoCloseable {
+
+    static final int NAMES = 100;
+
+    private final EmbeddedPostgres postgres;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkApplication(EmbeddedPostgres postgres, ConfigurableApplicationContext context) {
+        this.postgres = postgres;
+        this.context = context;
+    }
+
+    static BenchmarkApplication start(String... args) throws IOException {
+        EmbeddedPostgres postgres = EmbeddedPostgres.start();
+        List<String> arguments = new ArrayList<>(List.of(
+                "--spring.liquibase.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--spring.liquibase.user=postgres",
+                "--spring.liquibase.password=",
+                "--spring.r2dbc.url=r2dbc:postgresql://localhost:" + postgres.getPort() + "/postgres",
+                "--spring.r2dbc.username=postgres",
+                "--spring.r2dbc.password=",
+                "--logging.level.root=warn"));
+        arguments.addAll(List.of(args));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ReactiveApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(arguments.toArray(String[]::new));
+        return new BenchmarkApplication(postgres, context);
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    EmbeddedPostgres postgres() {
+        return postgres;
+    }
+
+    /**
+     * Пересоздает таблицу с {@code rows} строками; имена повторяются по кругу из {@link #NAMES} вариантов.
+     */
+    void seed(int rows) {
+        DatabaseClient.create(getBean(ConnectionFactory.class))
+                .sql("truncate student restart identity")
+                .then()
+                .block();
+        RepositoryWithDatabaseClient repository = getBean(RepositoryWithDatabaseClient.class);
+        Flux.range(0, rows)
+                .map(i -> new Student(null, name(i)))
+                .buffer(1000)
+                .concatMap(repository::insertAll)
+                .blockLast();
+    }
+
+    static String name(int i) {
+        return "student " + (i % NAMES);
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        postgres.close();
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.example.reactive.bench;
+
+import com.example.reactive.core.repository.RepositoryWithDatabaseClient;
+import com.example.reactive.core.repository.RepositoryWithEntityTemplate;
+import com.example.reactive.core.repository.Student;
+import com.example.reactive.core.repository.StudentRepository;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Сравнивает три способа доступа к данным на одних и тех же запросах.
+ * <p>
+ * Throughput и SampleTime (перцентили задержки) снимаются в одном прогоне, аллокации
+ * на операцию показывает {@code -prof gc}. Запуск: {@code mvn -Pjmh verify exec:exec}.
+ * Бенчмарк insert дописывает строки, поэтому таблица к концу итерации немного больше {@code rows}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class DataAccessBenchmark {
+
+    public enum Access {SPRING_DATA, ENTITY_TEMPLATE, DATABASE_CLIENT}
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"SPRING_DATA", "ENTITY_TEMPLATE", "DATABASE_CLIENT"})
+    public Access access;
+
+    private BenchmarkApplication application;
+    private Supplier<Flux<Student>> findAll;
+    private Function<Long, Mono<Student>> findById;
+    private Function<String, Flux<Student>> findByName;
+    private Function<Student, Mono<Student>> insert;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        application = BenchmarkApplication.start();
+        application.seed(rows);
+        switch (access) {
+            case SPRING_DATA -> {
+                StudentRepository repository = application.getBean(StudentRepository.class);
+                findAll = repository::findAll;
+                findById = repository::findById;
+                findByName = repository::findByName;
+                insert = repository::save;
+            }
+            case ENTITY_TEMPLATE -> {
+                RepositoryWithEntityTemplate repository = application.getBean(RepositoryWithEntityTemplate.class);
+                findAll = repository::findAll;
+                findById = repository::findById;
+                findByName = repository::findByName;
+                insert = repository::insert;
+            }
+            case DATABASE_CLIENT -> {
+                RepositoryWithDatabaseClient repository = application.getBean(RepositoryWithDatabaseClient.class);
+                findAll = repository::findAll;
+                findById = repository::findById;
+                findByName = repository::findByName;
+                insert = repository::insert;
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        application.close();
+    }
+
+    @Benchmark
+    public List<Student> findAll() {
+        return findAll.get().collectList().block();
+    }
+
+    @Benchmark
+    public Student findById() {
+        return findById.apply(ThreadLocalRandom.current().nextLong(1, rows + 1)).block();
+    }
+
+    @Benchmark
+    public List<Student> findByName() {
+        return findByName.apply(BenchmarkApplication.name(ThreadLocalRandom.current().nextInt(BenchmarkApplication.NAMES)))
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public Student insert() {
+        return insert.apply(new Student(null, "inserted")).block();
+    }
+
+}
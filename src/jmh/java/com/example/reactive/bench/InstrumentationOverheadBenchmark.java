@@ -0,0 +1,53 @@
+package com.example.reactive.bench;
+
+import com.example.reactive.core.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Накладные расходы {@link PipelineMetrics} на конвейерах без ввода-вывода.
+ * <p>
+ * Сравнивает один и тот же Mono/Flux без метрик и с метриками, разница на операцию
+ * и есть стоимость инструментирования. Аллокации показывает {@code -prof gc}.
+ * Запуск: {@code mvn -Pjmh verify exec:exec -Djmh.args=InstrumentationOverhead}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class InstrumentationOverheadBenchmark {
+
+    @Param({"false", "true"})
+    public boolean instrumented;
+
+    @Param({"1", "100"})
+    public int elements;
+
+    private PipelineMetrics metrics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        metrics = new PipelineMetrics(new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public Long mono() {
+        Mono<Long> pipeline = Mono.fromSupplier(() -> (long) elements).map(x -> x + 1);
+        return (instrumented ? metrics.repository("mono", pipeline) : pipeline).block();
+    }
+
+    @Benchmark
+    public Long flux() {
+        Flux<Long> pipeline = Flux.range(0, elements).map(Integer::longValue);
+        return (instrumented ? metrics.repository("flux", pipeline) : pipeline)
+                .reduce(0L, Long::sum)
+                .block();
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.example.reactive.bench;
+
+import com.example.reactive.core.StudentJsonEncoder;
+import com.example.reactive.core.repository.Student;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link StudentJsonEncoder} против стандартного {@link Jackson2JsonEncoder} на потоке студентов.
+ * <p>
+ * Буферы берутся из пула Netty, как на сервере, и сразу освобождаются. Время и аллокации
+ * ({@code -prof gc}, gc.alloc.rate.norm) пересчитаны на один элемент через {@link OperationsPerInvocation}.
+ * Запуск: {@code mvn -Pjmh verify exec:exec -Djmh.args="StudentEncoderBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@OperationsPerInvocation(StudentEncoderBenchmark.ELEMENTS)
+public class StudentEncoderBenchmark {
+
+    static final int ELEMENTS = 1000;
+
+    public enum Codec {JACKSON, STUDENT}
+
+    @Param({"JACKSON", "STUDENT"})
+    public Codec codec;
+
+    @Param({"application/json", "application/x-ndjson"})
+    public String mediaType;
+
+    private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+    private final ResolvableType type = ResolvableType.forClass(Student.class);
+    private Encoder<Object> encoder;
+    private MediaType mimeType;
+    private List<Student> students;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        encoder = codec == Codec.JACKSON ? new Jackson2JsonEncoder() : new StudentJsonEncoder();
+        mimeType = MediaType.parseMediaType(mediaType);
+        students = new ArrayList<>(ELEMENTS);
+        for (int i = 0; i < ELEMENTS; i++) {
+            students.add(new Student(1_000_000L + i, i % 10 == 0 ? "Студент \"" + i + "\"" : BenchmarkApplication.name(i)));
+        }
+    }
+
+    @Benchmark
+    public void encode(Blackhole blackhole) {
+        encoder.encode(Flux.fromIterable(students), bufferFactory, type, mimeType, null)
+                .doOnNext(buffer -> {
+                    blackhole.consume(buffer.readableByteCount());
+                    DataBufferUtils.release(buffer);
+                })
+                .blockLast();
+    }
+
+}
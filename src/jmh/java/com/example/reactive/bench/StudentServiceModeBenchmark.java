@@ -0,0 +1,91 @@
+package com.example.reactive.bench;
+
+import com.example.reactive.core.StudentService;
+import com.example.reactive.core.repository.Student;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link StudentService} поверх R2DBC и поверх JDBC ({@code student.jdbc.enabled}) при растущем числе
+ * одновременных запросов.
+ * <p>
+ * Одна операция - {@code concurrency} одновременных вызовов сервиса, так что запросов в секунду
+ * получается throughput * concurrency, а SampleTime - задержка самого медленного из них. Кэш и
+ * склейка поисков по id выключены, чтобы каждый вызов доходил до базы; пулы соединений
+ * одного размера (20). Память на операцию показывает {@code -prof gc}.
+ * Запуск: {@code mvn -Pjmh verify exec:exec -Djmh.args="StudentServiceModeBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class StudentServiceModeBenchmark {
+
+    public enum Access {R2DBC, JDBC}
+
+    private static final int ROWS = 10_000;
+
+    @Param({"R2DBC", "JDBC"})
+    public Access access;
+
+    @Param({"1", "16", "64", "256"})
+    public int concurrency;
+
+    private BenchmarkApplication application;
+    private StudentService service;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<String> args = new ArrayList<>(List.of(
+                "--student.cache.enabled=false",
+                "--student.loader.enabled=false",
+                "--spring.r2dbc.pool.max-size=20",
+                "--student.jdbc.pool-size=20"));
+        if (access == Access.JDBC) {
+            args.add("--student.jdbc.enabled=true");
+        }
+        application = BenchmarkApplication.start(args.toArray(String[]::new));
+        application.seed(ROWS);
+        service = application.getBean(StudentService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        application.close();
+    }
+
+    @Benchmark
+    public List<Student> findById() {
+        return Flux.range(0, concurrency)
+                .flatMap(i -> service.findStudentById(ThreadLocalRandom.current().nextLong(1, ROWS + 1)), concurrency)
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public List<Student> findPage() {
+        return Flux.range(0, concurrency)
+                .flatMap(i -> service.findStudentsPage(null, ThreadLocalRandom.current().nextLong(ROWS - 100), 100)
+                        .collectList(), concurrency)
+                .flatMapIterable(page -> page)
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public List<Student> insert() {
+        return Flux.range(0, concurrency)
+                .flatMap(i -> service.addNewStudent(new Student(null, "inserted")), concurrency)
+                .collectList()
+                .block();
+    }
+
+}
@@ -1,13 +1,25 @@
 package com.example.reactive;
 
+import com.example.reactive.core.BulkImportEnvironmentPostProcessor;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.context.ConfigurableApplicationContext;
 
-@SpringBootApplication
+// DataSource нужен только Liquibase (spring.liquibase.url) и режиму student.jdbc, у которого свой пул
+@SpringBootApplication(exclude = DataSourceAutoConfiguration.class)
+@ConfigurationPropertiesScan
 public class ReactiveApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(ReactiveApplication.class, args);
+		ConfigurableApplicationContext context = SpringApplication.run(ReactiveApplication.class, args);
+		// загрузка файла: без серверов (см. BulkImportEnvironmentPostProcessor), выход после StudentImportCommand;
+		// пробный запуск для AppCDS-архива в профиле fast-startup: полный старт и сразу выход
+		if (BulkImportEnvironmentPostProcessor.isEnabled(context.getEnvironment())
+				|| context.getEnvironment().getProperty("student.startup.exit-after-start", Boolean.class, false)) {
+			System.exit(SpringApplication.exit(context));
+		}
 	}
 
 }
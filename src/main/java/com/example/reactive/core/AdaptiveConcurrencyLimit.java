@@ -0,0 +1,90 @@
+package com.example.reactive.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Адаптивный предел одновременных запросов по градиенту задержки (как Gradient2 у Netflix).
+ * <p>
+ * Долгая задержка {@code longRtt} - скользящее среднее по последним сотням ответов, короткая - последний
+ * ответ. Пока ответы не медленнее долгой задержки с допуском {@code tolerance}, предел растет на
+ * {@code sqrt(limit)}; когда база тормозит и ответы замедляются, предел уменьшается пропорционально
+ * {@code longRtt / rtt}, но не больше чем вдвое за раз. Если занята меньше половины предела,
+ * он не растет: по недогруженному сервису нельзя судить, сколько он выдержит.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final int LONG_WINDOW = 600;
+    private static final int WARMUP = 10;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+    private double longRtt;
+    private int samples;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Занимает место, если оно есть; на каждый успешный вызов должен прийти {@link #release}.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Освобождает место; {@code rttNanos} учитывается в пределе, отрицательное значение - нет
+     * (отмененный запрос ничего не говорит о задержке).
+     */
+    public void release(long rttNanos) {
+        int current = inFlight.getAndDecrement();
+        if (rttNanos > 0) {
+            onSample(rttNanos, current);
+        }
+    }
+
+    private synchronized void onSample(long rtt, int inFlightAtSample) {
+        if (samples < WARMUP) {
+            samples++;
+            longRtt = longRtt + (rtt - longRtt) / samples;
+        } else {
+            longRtt = longRtt + (rtt - longRtt) * 2 / (LONG_WINDOW + 1);
+        }
+        // после долгой перегрузки долгое среднее само опускается слишком медленно
+        if (longRtt / rtt > 2) {
+            longRtt *= 0.95;
+        }
+        if (inFlightAtSample < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / rtt));
+        double next = limit * gradient + Math.sqrt(limit);
+        next = limit * (1 - SMOOTHING) + next * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.example.reactive.core;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+
+/**
+ * Режим загрузки файла, см. {@link StudentImportCommand}: если {@code student.bulk-import.file} задан
+ * где угодно (аргументы, переменные окружения, файл настроек), приложение стартует без http и rsocket
+ * серверов. Решение принимается по уже собранному окружению, до создания контекста: {@code spring.main.*}
+ * из него переносятся в {@link SpringApplication}.
+ */
+public class BulkImportEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    static final String FILE = "student.bulk-import.file";
+
+    private static final String RSOCKET_SERVER = "org.springframework.boot.autoconfigure.rsocket.RSocketServerAutoConfiguration";
+
+    public static boolean isEnabled(ConfigurableEnvironment environment) {
+        return environment.containsProperty(FILE);
+    }
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (!isEnabled(environment)) {
+            return;
+        }
+        String exclude = environment.getProperty("spring.autoconfigure.exclude");
+        environment.getPropertySources().addFirst(new MapPropertySource("studentBulkImport", Map.of(
+                "spring.main.web-application-type", "none",
+                "spring.autoconfigure.exclude", exclude == null || exclude.isBlank() ? RSOCKET_SERVER : exclude + "," + RSOCKET_SERVER)));
+    }
+
+}
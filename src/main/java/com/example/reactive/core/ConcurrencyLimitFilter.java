@@ -0,0 +1,104 @@
+package com.example.reactive.core;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Сбрасывает лишнюю нагрузку на {@code /students} до того, как она встанет в очереди reactor
+ * и пула соединений.
+ * <p>
+ * Чтение и запись ограничиваются отдельными {@link AdaptiveConcurrencyLimit}. Запрос сверх предела
+ * сразу получает 503 с {@code Retry-After}. Место занято до отправки заголовков ответа, а не до конца тела:
+ * NDJSON-стримы и выгрузка могут идти часами и иначе заняли бы весь предел, так что обычным запросам
+ * по id доставались бы 503. Это же время считается задержкой.
+ * <p>
+ * Метрики: {@code student.limiter.limit}, {@code student.limiter.inflight} и
+ * {@code student.limiter.rejected} с тегом {@code kind} = read / write.
+ */
+@Component
+public class ConcurrencyLimitFilter implements WebFilter {
+
+    private static final String PATH = "/students";
+    private static final String CHANGES_PATH = "/students/changes";
+
+    private final boolean enabled;
+    private final String retryAfter;
+    private final Kind read;
+    private final Kind write;
+
+    public ConcurrencyLimitFilter(StudentProperties properties, MeterRegistry meterRegistry) {
+        StudentProperties.Limiter config = properties.getLimiter();
+        this.enabled = config.isEnabled();
+        this.retryAfter = String.valueOf(Math.max(1, config.getRetryAfter().toSeconds()));
+        this.read = new Kind("read", config.getRead(), config.getTolerance(), meterRegistry);
+        this.write = new Kind("write", config.getWrite(), config.getTolerance(), meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        // подписки на изменения живут часами и базу не нагружают, их не ограничиваем
+        if (!enabled || !path.startsWith(PATH) || path.equals(CHANGES_PATH)) {
+            return chain.filter(exchange);
+        }
+        HttpMethod method = exchange.getRequest().getMethod();
+        Kind kind = HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method) ? read : write;
+        if (!kind.limit.tryAcquire()) {
+            kind.rejected.increment();
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, retryAfter);
+            return response.setComplete();
+        }
+        long start = System.nanoTime();
+        AtomicBoolean released = new AtomicBoolean();
+        exchange.getResponse().beforeCommit(() -> {
+            if (released.compareAndSet(false, true)) {
+                kind.limit.release(System.nanoTime() - start);
+            }
+            return Mono.empty();
+        });
+        // ответ не дошел до заголовков: ошибка или отмена
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    if (released.compareAndSet(false, true)) {
+                        kind.limit.release(signal == SignalType.CANCEL ? -1 : System.nanoTime() - start);
+                    }
+                });
+    }
+
+    private static final class Kind {
+
+        private final AdaptiveConcurrencyLimit limit;
+        private final Counter rejected;
+
+        private Kind(String name, StudentProperties.Limiter.Limit config, double tolerance, MeterRegistry meterRegistry) {
+            this.limit = new AdaptiveConcurrencyLimit(config.getInitialLimit(), config.getMinLimit(),
+                    config.getMaxLimit(), tolerance);
+            Gauge.builder("student.limiter.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                    .tag("kind", name)
+                    .register(meterRegistry);
+            Gauge.builder("student.limiter.inflight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                    .tag("kind", name)
+                    .register(meterRegistry);
+            this.rejected = Counter.builder("student.limiter.rejected")
+                    .tag("kind", name)
+                    .register(meterRegistry);
+        }
+
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.example.reactive.core;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+
+/**
+ * Сам пул собирает Spring Boot по {@code spring.r2dbc.pool.*}, здесь он только оборачивается
+ * в {@link TimedConnectionFactory}, чтобы было видно время ожидания соединения, и, если заданы
+ * {@code student.replicas.urls}, в {@link ReadWriteRoutingConnectionFactory} с пулами реплик.
+ * Пулы реплик - отдельный бин {@link ReplicaPools}, чтобы их закрыл контекст.
+ */
+@Configuration
+public class ConnectionPoolConfig {
+
+    @Bean
+    public static BeanPostProcessor timedConnectionPoolPostProcessor(ObjectProvider<MeterRegistry> meterRegistry,
+                                                                     ObjectProvider<StudentProperties> studentProperties,
+                                                                     ObjectProvider<ReplicaPools> replicaPools) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof ConnectionPool pool)) {
+                    return bean;
+                }
+                ConnectionFactory timed = new TimedConnectionFactory(pool, meterRegistry);
+                ReplicaPools replicas = replicaPools.getObject();
+                if (replicas.isEmpty()) {
+                    return timed;
+                }
+                return new ReadWriteRoutingConnectionFactory(timed, replicas,
+                        studentProperties.getObject().getReplicas().getReadYourWrites());
+            }
+        };
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ReplicaPools replicaPools(StudentProperties studentProperties, R2dbcProperties r2dbc, MeterRegistry meterRegistry) {
+        StudentProperties.Replicas replicas = studentProperties.getReplicas();
+        String username = replicas.getUsername() != null ? replicas.getUsername() : r2dbc.getUsername();
+        String password = replicas.getUsername() != null ? replicas.getPassword() : r2dbc.getPassword();
+        List<ConnectionPool> pools = replicas.getUrls().stream()
+                .map(url -> pool(url, username, password, r2dbc))
+                .toList();
+        return new ReplicaPools(replicas, meterRegistry, pools);
+    }
+
+    /**
+     * Пул к другой базе (реплике, шарду), настроенный как основной по {@code spring.r2dbc.pool.*},
+     * но без начальных соединений.
+     */
+    static ConnectionPool pool(String url, @Nullable String username, @Nullable String password, R2dbcProperties r2dbc) {
+        ConnectionFactoryBuilder builder = ConnectionFactoryBuilder.withUrl(url);
+        if (username != null) {
+            builder.username(username);
+        }
+        if (password != null) {
+            builder.password(password);
+        }
+        R2dbcProperties.Pool pool = r2dbc.getPool();
+        ConnectionPoolConfiguration.Builder configuration = ConnectionPoolConfiguration.builder(builder.build())
+                .initialSize(0)
+                .maxSize(pool.getMaxSize())
+                .maxIdleTime(pool.getMaxIdleTime());
+        if (pool.getValidationQuery() != null) {
+            configuration.validationQuery(pool.getValidationQuery());
+        }
+        if (pool.getMaxLifeTime() != null) {
+            configuration.maxLifeTime(pool.getMaxLifeTime());
+        }
+        if (pool.getMaxAcquireTime() != null) {
+            configuration.maxAcquireTime(pool.getMaxAcquireTime());
+        }
+        if (pool.getMaxCreateConnectionTime() != null) {
+            configuration.maxCreateConnectionTime(pool.getMaxCreateConnectionTime());
+        }
+        return new ConnectionPool(configuration.build());
+    }
+
+}
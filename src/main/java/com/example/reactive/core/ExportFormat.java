@@ -0,0 +1,38 @@
+package com.example.reactive.core;
+
+import org.springframework.http.MediaType;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Формат выгрузки {@code GET /students/export}.
+ */
+public enum ExportFormat {
+
+    /**
+     * {@code id,name} с заголовком, экранирование по RFC 4180.
+     */
+    CSV(new MediaType("text", "csv", StandardCharsets.UTF_8), "csv"),
+
+    /**
+     * Студент на строку, как в потоковом {@code GET /students}.
+     */
+    NDJSON(MediaType.APPLICATION_NDJSON, "ndjson");
+
+    private final MediaType mediaType;
+    private final String extension;
+
+    ExportFormat(MediaType mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.example.reactive.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Позиции загрузки по кускам файла: для каждого куска - смещение начала первой еще не записанной строки.
+ * <p>
+ * Файл перезаписывается целиком после каждой записанной пачки (через временный файл и атомарный rename),
+ * поэтому после падения загрузка продолжается с последней записанной пачки. Пачка, записанная в базу,
+ * но не успевшая попасть в checkpoint, при продолжении запишется еще раз; с {@code keep-ids} повтор
+ * отбрасывается по первичному ключу. Размер файла и куска сохраняются, чтобы не продолжить чужую загрузку.
+ */
+final class ImportCheckpoint {
+
+    private final Path path;
+    private final long fileSize;
+    private final long segmentSize;
+    private final long[] offsets;
+
+    private ImportCheckpoint(Path path, long fileSize, long segmentSize, long[] offsets) {
+        this.path = path;
+        this.fileSize = fileSize;
+        this.segmentSize = segmentSize;
+        this.offsets = offsets;
+    }
+
+    static ImportCheckpoint open(Path path, long fileSize, long segmentSize, List<StudentImportCommand.Segment> segments) {
+        long[] offsets = segments.stream().mapToLong(StudentImportCommand.Segment::start).toArray();
+        if (!Files.exists(path)) {
+            return new ImportCheckpoint(path, fileSize, segmentSize, offsets);
+        }
+        Properties saved = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            saved.load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (Long.parseLong(saved.getProperty("file.size")) != fileSize
+                || Long.parseLong(saved.getProperty("segment.size")) != segmentSize) {
+            throw new IllegalStateException("Checkpoint " + path + " was written for another file or segment size");
+        }
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = Long.parseLong(saved.getProperty("segment." + i, Long.toString(offsets[i])));
+        }
+        return new ImportCheckpoint(path, fileSize, segmentSize, offsets);
+    }
+
+    synchronized long offset(int segment) {
+        return offsets[segment];
+    }
+
+    synchronized void advance(int segment, long offset) {
+        offsets[segment] = offset;
+        Properties properties = new Properties();
+        properties.setProperty("file.size", Long.toString(fileSize));
+        properties.setProperty("segment.size", Long.toString(segmentSize));
+        for (int i = 0; i < offsets.length; i++) {
+            properties.setProperty("segment." + i, Long.toString(offsets[i]));
+        }
+        try {
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                properties.store(writer, null);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Сумма уже пройденных байт, для прогресса.
+     */
+    synchronized long done(List<StudentImportCommand.Segment> segments) {
+        long done = 0;
+        for (StudentImportCommand.Segment segment : segments) {
+            done += offsets[segment.index()] - segment.start();
+        }
+        return done;
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+}
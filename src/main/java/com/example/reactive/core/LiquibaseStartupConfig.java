@@ -0,0 +1,109 @@
+package com.example.reactive.core;
+
+import liquibase.integration.spring.SpringLiquibase;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.Nullable;
+import reactor.core.scheduler.Schedulers;
+
+import java.sql.SQLException;
+
+/**
+ * Liquibase на старте по {@code student.migrations.mode}, см. {@link SchemaMigrations}.
+ * <p>
+ * Бин Liquibase создает Spring Boot, и changelog прогоняется при его инициализации, поэтому здесь
+ * прогон выключается до инициализации, если он не нужен или откладывается до {@link ApplicationReadyEvent}.
+ */
+@Configuration
+public class LiquibaseStartupConfig {
+
+    @Bean
+    public static LiquibaseStartup liquibaseStartup(ObjectProvider<StudentProperties> studentProperties) {
+        return new LiquibaseStartup(studentProperties);
+    }
+
+    @Slf4j
+    static class LiquibaseStartup implements BeanPostProcessor, ApplicationListener<ApplicationReadyEvent> {
+
+        private final ObjectProvider<StudentProperties> studentProperties;
+        @Nullable
+        private String checksum;
+        @Nullable
+        private SpringLiquibase deferred;
+
+        LiquibaseStartup(ObjectProvider<StudentProperties> studentProperties) {
+            this.studentProperties = studentProperties;
+        }
+
+        @Override
+        public Object postProcessBeforeInitialization(Object bean, String beanName) {
+            if (!(bean instanceof SpringLiquibase liquibase)) {
+                return bean;
+            }
+            MigrationMode mode = studentProperties.getObject().getMigrations().getMode();
+            if (mode == MigrationMode.ALWAYS) {
+                return bean;
+            }
+            if (mode == MigrationMode.NEVER) {
+                liquibase.setShouldRun(false);
+                log.info("Liquibase is off, student.migrations.mode=never");
+                return bean;
+            }
+            long started = System.nanoTime();
+            String sum = SchemaMigrations.checksum(liquibase.getResourceLoader(), liquibase.getChangeLog());
+            if (SchemaMigrations.upToDate(liquibase.getDataSource(), liquibase.getChangeLog(), sum)) {
+                liquibase.setShouldRun(false);
+                log.info("Liquibase skipped, {} is unchanged since the last run (checked in {} ms)",
+                        liquibase.getChangeLog(), (System.nanoTime() - started) / 1_000_000);
+                return bean;
+            }
+            checksum = sum;
+            if (mode == MigrationMode.DEFERRED) {
+                liquibase.setShouldRun(false);
+                deferred = liquibase;
+                log.info("{} has changed, Liquibase will run once the application is ready", liquibase.getChangeLog());
+            }
+            return bean;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof SpringLiquibase liquibase && checksum != null && deferred == null) {
+                try {
+                    SchemaMigrations.record(liquibase.getDataSource(), liquibase.getChangeLog(), checksum);
+                } catch (SQLException e) {
+                    // схема уже накатана, просто на следующем старте Liquibase снова пройдет целиком
+                    log.warn("Failed to record the changelog checksum: {}", e.toString());
+                }
+                checksum = null;
+            }
+            return bean;
+        }
+
+        @Override
+        public void onApplicationEvent(ApplicationReadyEvent event) {
+            SpringLiquibase liquibase = deferred;
+            String sum = checksum;
+            if (liquibase == null || sum == null) {
+                return;
+            }
+            deferred = null;
+            Schedulers.boundedElastic().schedule(() -> {
+                try {
+                    long started = System.nanoTime();
+                    SchemaMigrations.migrate(liquibase, sum);
+                    log.info("Deferred Liquibase run finished in {} ms", (System.nanoTime() - started) / 1_000_000);
+                } catch (Exception e) {
+                    log.error("Deferred Liquibase run failed", e);
+                }
+            });
+        }
+
+    }
+
+}
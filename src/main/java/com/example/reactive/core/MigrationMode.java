@@ -0,0 +1,29 @@
+package com.example.reactive.core;
+
+/**
+ * Когда на старте запускать Liquibase, {@code student.migrations.mode}; см. {@link SchemaMigrations}.
+ */
+public enum MigrationMode {
+
+    /**
+     * На каждом старте, до того как приложение начнет принимать запросы.
+     */
+    ALWAYS,
+
+    /**
+     * Только если changelog изменился с последнего прогона, иначе старт без Liquibase.
+     */
+    IF_CHANGED,
+
+    /**
+     * Как {@link #IF_CHANGED}, но изменившийся changelog прогоняется в фоне, когда приложение уже
+     * принимает запросы. Годится только для изменений схемы, совместимых с работающим кодом.
+     */
+    DEFERRED,
+
+    /**
+     * Не запускать: схему накатывает отдельный шаг развертывания.
+     */
+    NEVER
+
+}
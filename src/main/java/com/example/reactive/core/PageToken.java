@@ -0,0 +1,44 @@
+package com.example.reactive.core;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Непрозрачный токен следующей страницы. Внутри лежит id последней отданной записи,
+ * но клиент не должен на это полагаться.
+ */
+public final class PageToken {
+
+    private static final String PREFIX = "id:";
+
+    private PageToken() {
+    }
+
+    public static String encode(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return id, после которого начинается страница; 0 для первой страницы
+     */
+    public static long decode(@Nullable String token) {
+        if (token == null || token.isEmpty()) {
+            return 0;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            if (!value.startsWith(PREFIX)) {
+                throw new IllegalArgumentException(value);
+            }
+            return Long.parseLong(value.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed page token");
+        }
+    }
+
+}
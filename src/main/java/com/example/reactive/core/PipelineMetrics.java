@@ -0,0 +1,46 @@
+package com.example.reactive.core;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Метрики reactor-конвейеров через {@link Micrometer#metrics}.
+ * <p>
+ * Для каждого конвейера с именем {@code name} и тегом {@code operation} публикуются:
+ * {@code <name>.flow.duration} - время от подписки до завершения с тегом {@code status}
+ * (completed, completedEmpty, error, cancelled), {@code <name>.subscribed} - число подписок,
+ * для Flux еще {@code <name>.requested} и {@code <name>.onNext.delay}.
+ * <p>
+ * Стоимость (InstrumentationOverheadBenchmark): порядка 3 мкс и 4 КБ на подписку и ~150 нс
+ * на элемент Flux - на фоне обращения к базе незаметно, но в горячие циклы без ввода-вывода не ставить.
+ */
+@Component
+@RequiredArgsConstructor
+public class PipelineMetrics {
+
+    public static final String SERVICE = "student.service";
+    public static final String REPOSITORY = "student.repository";
+
+    private final MeterRegistry meterRegistry;
+
+    public <T> Mono<T> service(String operation, Mono<T> pipeline) {
+        return pipeline.name(SERVICE).tag("operation", operation).tap(Micrometer.metrics(meterRegistry));
+    }
+
+    public <T> Flux<T> service(String operation, Flux<T> pipeline) {
+        return pipeline.name(SERVICE).tag("operation", operation).tap(Micrometer.metrics(meterRegistry));
+    }
+
+    public <T> Mono<T> repository(String operation, Mono<T> call) {
+        return call.name(REPOSITORY).tag("operation", operation).tap(Micrometer.metrics(meterRegistry));
+    }
+
+    public <T> Flux<T> repository(String operation, Flux<T> call) {
+        return call.name(REPOSITORY).tag("operation", operation).tap(Micrometer.metrics(meterRegistry));
+    }
+
+}
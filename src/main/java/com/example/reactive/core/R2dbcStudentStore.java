@@ -0,0 +1,109 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.RepositoryWithDatabaseClient;
+import com.example.reactive.core.repository.SearchMode;
+import com.example.reactive.core.repository.Student;
+import com.example.reactive.core.repository.StudentRepository;
+import com.example.reactive.core.repository.StudentStore;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Хранилище по умолчанию: одна база через R2DBC.
+ * <p>
+ * Чтения помечены {@link ReadRouting#replica} и при настроенных репликах идут на них, записи - {@link ReadRouting#write}
+ * и идут на primary, как и {@link #findCurrentById}. Поиск по id идет через {@link StudentBatchLoader},
+ * а одиночные вставки через {@link StudentGroupCommitter}, если они включены.
+ */
+@RequiredArgsConstructor
+class R2dbcStudentStore implements StudentStore {
+
+    private final StudentRepository studentRepository;
+    private final RepositoryWithDatabaseClient repository;
+    private final StudentProperties properties;
+    private final StudentBatchLoader studentBatchLoader;
+    private final StudentGroupCommitter studentGroupCommitter;
+
+    @Override
+    public Mono<Student> findById(Long id) {
+        return properties.getLoader().isEnabled()
+                ? studentBatchLoader.load(id)
+                : ReadRouting.replica(studentRepository.findById(id));
+    }
+
+    @Override
+    public Mono<Student> findCurrentById(Long id) {
+        return studentRepository.findById(id);
+    }
+
+    @Override
+    public Flux<Student> findAll(int fetchSize) {
+        return ReadRouting.replica(repository.findAll(fetchSize));
+    }
+
+    @Override
+    public Flux<Student> findByName(String name, int fetchSize) {
+        return ReadRouting.replica(repository.findByName(name, fetchSize));
+    }
+
+    @Override
+    public Flux<Student> findPage(long after, int limit) {
+        return ReadRouting.replica(studentRepository.findPage(after, limit));
+    }
+
+    @Override
+    public Flux<Student> findPageByName(String name, long after, int limit) {
+        return ReadRouting.replica(studentRepository.findPageByName(name, after, limit));
+    }
+
+    @Override
+    public Flux<Student> search(String query, SearchMode mode, int limit) {
+        return ReadRouting.replica(repository.search(query, mode, limit));
+    }
+
+    @Override
+    public Mono<Student> save(Student student) {
+        return properties.getGroupCommit().isEnabled() && student.getId() == null
+                ? studentGroupCommitter.insert(student)
+                : ReadRouting.write(studentRepository.save(student));
+    }
+
+    @Override
+    public Flux<Student> insertAll(List<Student> students) {
+        return ReadRouting.write(repository.insertAll(students));
+    }
+
+    @Override
+    public Flux<Student> updateAll(List<Student> students) {
+        return ReadRouting.write(repository.updateAll(students));
+    }
+
+    @Override
+    public Mono<Student> updateName(long id, String name) {
+        return ReadRouting.write(studentRepository.updateName(id, name));
+    }
+
+    @Override
+    public Mono<Student> updateNameIfVersion(long id, String name, Long[] versions) {
+        return ReadRouting.write(repository.updateNameIfVersion(id, name, versions));
+    }
+
+    @Override
+    public Mono<Long> deleteReturningId(long id) {
+        return ReadRouting.write(studentRepository.deleteReturningId(id));
+    }
+
+    @Override
+    public Mono<Long> deleteIfVersion(long id, Long[] versions) {
+        return ReadRouting.write(repository.deleteIfVersion(id, versions));
+    }
+
+    @Override
+    public Mono<Long> findChangeCounter() {
+        return ReadRouting.replica(repository.findChangeCounter());
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.example.reactive.core;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * Пометки в Reactor {@link Context} для {@link ReadWriteRoutingConnectionFactory}: {@link #replica}
+ * - конвейер только читает и может идти на реплику, {@link #write} - конвейер меняет данные, и с
+ * {@code read-your-writes} чтения какое-то время идут на primary. Без пометок соединение берется
+ * у primary и окно read-your-writes не открывает.
+ * <p>
+ * Реплика выбирается один раз на помеченный конвейер, и все его запросы идут на нее: так, например,
+ * версия таблицы и страница списка читаются с одного и того же сервера. Вложенная пометка
+ * не перевыбирает реплику, а пользуется внешней.
+ */
+public final class ReadRouting {
+
+    static final Object KEY = ReadRouting.class;
+    static final Object WRITE_KEY = Write.class;
+
+    private ReadRouting() {
+    }
+
+    public static <T> Mono<T> replica(Mono<T> mono) {
+        return mono.contextWrite(ReadRouting::mark);
+    }
+
+    public static <T> Flux<T> replica(Flux<T> flux) {
+        return flux.contextWrite(ReadRouting::mark);
+    }
+
+    public static <T> Mono<T> write(Mono<T> mono) {
+        return mono.contextWrite(context -> context.put(WRITE_KEY, Write.INSTANCE));
+    }
+
+    public static <T> Flux<T> write(Flux<T> flux) {
+        return flux.contextWrite(context -> context.put(WRITE_KEY, Write.INSTANCE));
+    }
+
+    private static Context mark(Context context) {
+        return context.hasKey(KEY) ? context : context.put(KEY, new Route());
+    }
+
+    /**
+     * Выбранный для конвейера сервер; null, пока конвейер не брал соединение.
+     */
+    static final class Route {
+
+        volatile String target;
+
+    }
+
+    private enum Write {
+        INSTANCE
+    }
+
+}
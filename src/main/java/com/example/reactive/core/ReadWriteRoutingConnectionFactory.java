@@ -0,0 +1,104 @@
+package com.example.reactive.core;
+
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Wrapped;
+import org.springframework.r2dbc.connection.lookup.AbstractRoutingConnectionFactory;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Отправляет помеченные {@link ReadRouting} чтения на реплики из {@link ReplicaPools}, все остальное - на primary.
+ * <p>
+ * Реплики чередуются по кругу среди здоровых; пока реплика не ответила на первую проверку здоровья
+ * или после неудачной, чтения с нее уходят на другие реплики, а если здоровых нет - на primary.
+ * <p>
+ * С {@code read-your-writes} после записи, помеченной {@link ReadRouting#write}, все чтения этого экземпляра
+ * в течение окна идут на primary, чтобы не увидеть данные до своей записи,
+ * пока реплика догоняет. Окно общее на экземпляр: при постоянном потоке записей реплики простаивают.
+ * <p>
+ * Ничего не закрывает: пул primary закрывает Spring Boot, реплики - {@link ReplicaPools}.
+ */
+class ReadWriteRoutingConnectionFactory extends AbstractRoutingConnectionFactory implements Wrapped<ConnectionFactory> {
+
+    static final String PRIMARY = "primary";
+
+    private final ConnectionFactory primary;
+    private final List<ReplicaPools.Replica> replicas;
+    private final long readYourWritesNanos;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile long lastWrite;
+
+    ReadWriteRoutingConnectionFactory(ConnectionFactory primary, ReplicaPools replicaPools, Duration readYourWrites) {
+        this.primary = primary;
+        this.replicas = replicaPools.replicas();
+        this.readYourWritesNanos = readYourWrites.toNanos();
+        this.lastWrite = System.nanoTime() - readYourWritesNanos;
+
+        Map<String, ConnectionFactory> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (ReplicaPools.Replica replica : replicas) {
+            targets.put(replica.name, replica.pool);
+        }
+        setTargetConnectionFactories(targets);
+        setDefaultTargetConnectionFactory(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Mono<Object> determineCurrentLookupKey() {
+        return Mono.deferContextual(context -> {
+            if (context.hasKey(ReadRouting.WRITE_KEY)) {
+                lastWrite = System.nanoTime();
+                return Mono.just(PRIMARY);
+            }
+            ReadRouting.Route route = context.getOrDefault(ReadRouting.KEY, null);
+            if (route == null) {
+                return Mono.just(PRIMARY);
+            }
+            String target = route.target;
+            if (target == null) {
+                target = choose();
+                route.target = target;
+            }
+            return Mono.just(target);
+        });
+    }
+
+    private String choose() {
+        if (System.nanoTime() - lastWrite < readYourWritesNanos) {
+            return PRIMARY;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            ReplicaPools.Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica.name;
+            }
+        }
+        return PRIMARY;
+    }
+
+    /**
+     * Диалект Spring Data определяет по метаданным, у всех серверов они одинаковые.
+     */
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return primary.getMetadata();
+    }
+
+    /**
+     * Метрики пула primary Spring Boot находит через {@link Wrapped}.
+     */
+    @Override
+    public ConnectionFactory unwrap() {
+        return primary;
+    }
+
+}
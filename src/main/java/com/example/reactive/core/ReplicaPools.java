@@ -0,0 +1,105 @@
+package com.example.reactive.core;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Connection;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.metrics.r2dbc.ConnectionPoolMetrics;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Пулы реплик из {@code student.replicas.urls} и проверка их здоровья запросом {@code select 1}
+ * раз в {@code student.replicas.health-check-interval}.
+ * <p>
+ * Отдельный бин, а не часть {@link ReadWriteRoutingConnectionFactory}: та подменяет пул primary
+ * в post-processor'е, и Spring вызывает destroy-метод у исходного пула, а не у подмены. Здесь же
+ * пулы и проверки закрываются вместе с контекстом.
+ */
+@Slf4j
+class ReplicaPools implements Disposable {
+
+    private final List<Replica> replicas;
+    private final Disposable healthChecks;
+
+    ReplicaPools(StudentProperties.Replicas properties, MeterRegistry meterRegistry, List<ConnectionPool> pools) {
+        this.replicas = IntStream.range(0, pools.size())
+                .mapToObj(i -> new Replica("replica-" + i, pools.get(i)))
+                .toList();
+        for (Replica replica : replicas) {
+            new ConnectionPoolMetrics(replica.pool, replica.name, Tags.empty()).bindTo(meterRegistry);
+            Gauge.builder("student.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .tag("replica", replica.name)
+                    .register(meterRegistry);
+        }
+        Duration timeout = properties.getHealthCheckTimeout();
+        this.healthChecks = replicas.isEmpty()
+                ? Disposables.single()
+                : Flux.interval(Duration.ZERO, properties.getHealthCheckInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> Flux.fromIterable(replicas).flatMap(replica -> replica.check(timeout)))
+                .subscribe();
+    }
+
+    List<Replica> replicas() {
+        return replicas;
+    }
+
+    boolean isEmpty() {
+        return replicas.isEmpty();
+    }
+
+    @Override
+    public void dispose() {
+        healthChecks.dispose();
+        replicas.forEach(replica -> replica.pool.dispose());
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return healthChecks.isDisposed();
+    }
+
+    static final class Replica {
+
+        final String name;
+        final ConnectionPool pool;
+        volatile boolean healthy;
+
+        private Replica(String name, ConnectionPool pool) {
+            this.name = name;
+            this.pool = pool;
+        }
+
+        Mono<Boolean> check(Duration timeout) {
+            return Mono.usingWhen(pool.create(),
+                            connection -> Flux.from(connection.createStatement("select 1").execute())
+                                    .concatMap(result -> result.map((row, metadata) -> true))
+                                    .then(Mono.just(true)),
+                            Connection::close)
+                    .timeout(timeout)
+                    .onErrorResume(e -> {
+                        if (healthy) {
+                            log.warn("Student replica {} is unhealthy, reads go elsewhere: {}", name, e.toString());
+                        }
+                        return Mono.just(false);
+                    })
+                    .doOnNext(ok -> {
+                        if (ok && !healthy) {
+                            log.info("Student replica {} is healthy", name);
+                        }
+                        healthy = ok;
+                    });
+        }
+
+    }
+
+}
@@ -0,0 +1,171 @@
+package com.example.reactive.core;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Метрики исполнителей reactor-планировщиков: размер очереди задач (в т.ч. после publishOn),
+ * число активных потоков и время выполнения задач.
+ * <p>
+ * Декоратор применяется только к исполнителям, созданным после {@link #install()}, поэтому
+ * ставится инициализатором контекста из {@code META-INF/spring.factories} - до старта любого
+ * контекста, в том числе в тестах и бенчмарках. Метрики пишутся в глобальный реестр,
+ * к которому spring boot подключает свои реестры.
+ * <p>
+ * У boundedElastic свой исполнитель на каждого воркера, поэтому каждый исполнитель получает тег
+ * {@code executor} с порядковым номером, а его метрики удаляются, когда воркер вытесняется.
+ */
+public final class SchedulerMetrics implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+    private static final String KEY = "student.scheduler.metrics";
+    private static final AtomicLong executors = new AtomicLong();
+
+    @Override
+    public void initialize(ConfigurableApplicationContext context) {
+        install();
+    }
+
+    public static void install() {
+        // повторная установка с тем же ключом ничего не делает
+        Schedulers.addExecutorServiceDecorator(KEY, (scheduler, executor) -> {
+            String name = scheduler.toString().replaceAll("\\W+", "_");
+            Tags tags = Tags.of("scheduler", name, "executor", Long.toString(executors.incrementAndGet()));
+            return new MonitoredExecutor(Metrics.globalRegistry, executor,
+                    ExecutorServiceMetrics.monitor(Metrics.globalRegistry, executor, "reactor." + name, tags), tags);
+        });
+    }
+
+    /**
+     * Исполнитель с метриками из {@link ExecutorServiceMetrics#monitor}, который удаляет их при остановке.
+     * Остановка идет напрямую в исходный исполнитель: обертка micrometer только делегирует ее.
+     */
+    private static final class MonitoredExecutor implements ScheduledExecutorService {
+
+        private final MeterRegistry registry;
+        private final ScheduledExecutorService executor;
+        private final ScheduledExecutorService timed;
+        private final Tags tags;
+
+        MonitoredExecutor(MeterRegistry registry, ScheduledExecutorService executor, ScheduledExecutorService timed, Tags tags) {
+            this.registry = registry;
+            this.executor = executor;
+            this.timed = timed;
+            this.tags = tags;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            timed.execute(command);
+        }
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            return timed.submit(task);
+        }
+
+        @Override
+        public <T> Future<T> submit(Runnable task, T result) {
+            return timed.submit(task, result);
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            return timed.submit(task);
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+            return timed.invokeAll(tasks);
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+                throws InterruptedException {
+            return timed.invokeAll(tasks, timeout, unit);
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+            return timed.invokeAny(tasks);
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return timed.invokeAny(tasks, timeout, unit);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            return timed.schedule(command, delay, unit);
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            return timed.schedule(callable, delay, unit);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+            return timed.scheduleAtFixedRate(command, initialDelay, period, unit);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            return timed.scheduleWithFixedDelay(command, initialDelay, delay, unit);
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdown();
+            removeMeters();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            List<Runnable> pending = executor.shutdownNow();
+            removeMeters();
+            return pending;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return executor.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return executor.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return executor.awaitTermination(timeout, unit);
+        }
+
+        private void removeMeters() {
+            registry.getMeters().stream()
+                    .filter(meter -> meter.getId().getName().startsWith("executor")
+                            && tags.stream().allMatch(tag -> tag.getValue().equals(meter.getId().getTag(tag.getKey()))))
+                    .forEach(registry::remove);
+        }
+
+    }
+
+}
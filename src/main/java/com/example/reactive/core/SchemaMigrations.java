@@ -0,0 +1,115 @@
+package com.example.reactive.core;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.ResourcePatternUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Запуск Liquibase только тогда, когда он что-то изменит.
+ * <p>
+ * Полный прогон - это разбор changelog, блокировка {@code databasechangeloglock} и сверка каждого
+ * changeset с {@code databasechangelog}, на старте это секунды. Вместо него считается SHA-256 всех файлов
+ * в каталоге changelog и сравнивается с суммой, которую записал в {@code schema_checksum} последний
+ * успешный прогон, - это одно соединение и один запрос. Сумму пишут только режимы {@code student.migrations.mode},
+ * которые ее читают, поэтому первый старт в таком режиме еще прогоняет Liquibase.
+ */
+final class SchemaMigrations {
+
+    private SchemaMigrations() {
+    }
+
+    /**
+     * Синхронный прогон по {@code mode}; {@link MigrationMode#DEFERRED} здесь то же, что {@link MigrationMode#IF_CHANGED}.
+     */
+    static void run(SpringLiquibase liquibase, MigrationMode mode) throws Exception {
+        switch (mode) {
+            case NEVER -> {
+            }
+            case ALWAYS -> liquibase.afterPropertiesSet();
+            case IF_CHANGED, DEFERRED -> {
+                String checksum = checksum(liquibase.getResourceLoader(), liquibase.getChangeLog());
+                if (!upToDate(liquibase.getDataSource(), liquibase.getChangeLog(), checksum)) {
+                    migrate(liquibase, checksum);
+                }
+            }
+        }
+    }
+
+    /**
+     * Прогоняет changelog и запоминает его сумму.
+     */
+    static void migrate(SpringLiquibase liquibase, String checksum) throws Exception {
+        liquibase.setShouldRun(true);
+        liquibase.afterPropertiesSet();
+        record(liquibase.getDataSource(), liquibase.getChangeLog(), checksum);
+    }
+
+    /**
+     * Сумма файлов в каталоге {@code changeLog} и его подкаталогах вместе с их путями внутри каталога.
+     */
+    static String checksum(ResourceLoader resourceLoader, String changeLog) {
+        String directory = changeLog.substring(0, changeLog.lastIndexOf('/') + 1);
+        String base = directory.substring(directory.indexOf(':') + 1);
+        try {
+            Map<String, Resource> files = new TreeMap<>();
+            for (Resource resource : ResourcePatternUtils.getResourcePatternResolver(resourceLoader).getResources(directory + "**/*")) {
+                String url = resource.getURL().toString();
+                // каталоги в jar тоже находятся, но в каталоге классов их нет, сумма должна совпадать
+                if (url.endsWith("/") || !resource.isReadable()) {
+                    continue;
+                }
+                int at = url.lastIndexOf(base);
+                files.put(at < 0 ? url : url.substring(at), resource);
+            }
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Map.Entry<String, Resource> file : files.entrySet()) {
+                digest.update(file.getKey().getBytes(StandardCharsets.UTF_8));
+                digest.update(file.getValue().getContentAsByteArray());
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static boolean upToDate(DataSource dataSource, String changeLog, String checksum) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("select checksum from schema_checksum where change_log = ?")) {
+            statement.setString(1, changeLog);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && checksum.equals(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            // таблицы еще нет или база недоступна: дальше разберется Liquibase
+            return false;
+        }
+    }
+
+    static void record(DataSource dataSource, String changeLog, String checksum) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("insert into schema_checksum (change_log, checksum) values (?, ?) " +
+                     "on conflict (change_log) do update set checksum = excluded.checksum, updated_at = now()")) {
+            statement.setString(1, changeLog);
+            statement.setString(2, checksum);
+            statement.executeUpdate();
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.SearchMode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Параметры поиска для rsocket-маршрута {@code students.search}; в HTTP они идут query-параметрами.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SearchRequest {
+
+    private String query;
+
+    private SearchMode mode = SearchMode.PREFIX;
+
+    private Integer limit;
+
+}
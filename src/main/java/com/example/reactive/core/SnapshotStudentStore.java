@@ -0,0 +1,104 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.SearchMode;
+import com.example.reactive.core.repository.Student;
+import com.example.reactive.core.repository.StudentStore;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Чтения по id, спискам и страницам из {@link StudentSnapshot}, пока он загружен, иначе и все
+ * остальное - в {@code delegate}. Поиск в снимке не индексирован и всегда идет в базу.
+ * <p>
+ * Снимок отстает от базы, поэтому версии таблицы при нем нет: она опережала бы содержимое.
+ */
+@RequiredArgsConstructor
+class SnapshotStudentStore implements StudentStore {
+
+    private final StudentStore delegate;
+    private final StudentSnapshotService studentSnapshotService;
+
+    @Override
+    public Mono<Student> findById(Long id) {
+        StudentSnapshot snapshot = studentSnapshotService.current();
+        return snapshot != null ? Mono.justOrEmpty(snapshot.find(id)) : delegate.findById(id);
+    }
+
+    @Override
+    public Mono<Student> findCurrentById(Long id) {
+        return delegate.findCurrentById(id);
+    }
+
+    @Override
+    public Flux<Student> findAll(int fetchSize) {
+        StudentSnapshot snapshot = studentSnapshotService.current();
+        return snapshot != null ? Flux.fromIterable(snapshot.page(0, Integer.MAX_VALUE)) : delegate.findAll(fetchSize);
+    }
+
+    @Override
+    public Flux<Student> findByName(String name, int fetchSize) {
+        StudentSnapshot snapshot = studentSnapshotService.current();
+        return snapshot != null ? Flux.fromIterable(snapshot.pageByName(name, 0, Integer.MAX_VALUE)) : delegate.findByName(name, fetchSize);
+    }
+
+    @Override
+    public Flux<Student> findPage(long after, int limit) {
+        StudentSnapshot snapshot = studentSnapshotService.current();
+        return snapshot != null ? Flux.fromIterable(snapshot.page(after, limit)) : delegate.findPage(after, limit);
+    }
+
+    @Override
+    public Flux<Student> findPageByName(String name, long after, int limit) {
+        StudentSnapshot snapshot = studentSnapshotService.current();
+        return snapshot != null ? Flux.fromIterable(snapshot.pageByName(name, after, limit)) : delegate.findPageByName(name, after, limit);
+    }
+
+    @Override
+    public Flux<Student> search(String query, SearchMode mode, int limit) {
+        return delegate.search(query, mode, limit);
+    }
+
+    @Override
+    public Mono<Student> save(Student student) {
+        return delegate.save(student);
+    }
+
+    @Override
+    public Flux<Student> insertAll(List<Student> students) {
+        return delegate.insertAll(students);
+    }
+
+    @Override
+    public Flux<Student> updateAll(List<Student> students) {
+        return delegate.updateAll(students);
+    }
+
+    @Override
+    public Mono<Student> updateName(long id, String name) {
+        return delegate.updateName(id, name);
+    }
+
+    @Override
+    public Mono<Student> updateNameIfVersion(long id, String name, Long[] versions) {
+        return delegate.updateNameIfVersion(id, name, versions);
+    }
+
+    @Override
+    public Mono<Long> deleteReturningId(long id) {
+        return delegate.deleteReturningId(id);
+    }
+
+    @Override
+    public Mono<Long> deleteIfVersion(long id, Long[] versions) {
+        return delegate.deleteIfVersion(id, versions);
+    }
+
+    @Override
+    public Mono<Long> findChangeCounter() {
+        return studentSnapshotService.current() != null ? Mono.empty() : delegate.findChangeCounter();
+    }
+
+}
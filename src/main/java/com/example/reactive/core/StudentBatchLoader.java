@@ -0,0 +1,77 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.RepositoryWithDatabaseClient;
+import com.example.reactive.core.repository.Student;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Склеивает одновременные запросы студентов по id в один {@code where id = any($1)}.
+ * <p>
+ * Запросы копятся до {@code student.loader.max-batch-size} штук или до истечения
+ * {@code student.loader.window}, после чего пачка уходит в базу одним запросом,
+ * а результат раздается каждому ожидающему {@link Mono}. Очередь готовых пачек ограничена
+ * {@code student.loader.max-pending-batches}: при ее переполнении запросы пачки получают
+ * {@link TransientDataAccessResourceException}, а не ждут в памяти без предела.
+ */
+@Component
+public class StudentBatchLoader implements DisposableBean {
+
+    private final RepositoryWithDatabaseClient repository;
+    private final PipelineMetrics metrics;
+    private final Disposable subscription;
+    private FluxSink<Request> requests;
+
+    public StudentBatchLoader(RepositoryWithDatabaseClient repository, StudentProperties properties, PipelineMetrics metrics) {
+        this.repository = repository;
+        this.metrics = metrics;
+        StudentProperties.Loader config = properties.getLoader();
+        // FluxSink из Flux.create сериализует next, поэтому писать в него можно из любого потока
+        this.subscription = Flux.<Request>create(sink -> this.requests = sink)
+                .bufferTimeout(config.getMaxBatchSize(), config.getWindow())
+                // bufferTimeout не умеет ждать спроса, поэтому готовые пачки копятся здесь,
+                // пока все maxConcurrency запросов в базу заняты; сверх max-pending-batches пачка сразу получает ошибку
+                .onBackpressureBuffer(config.getMaxPendingBatches(), StudentBatchLoader::reject, BufferOverflowStrategy.DROP_LATEST)
+                .flatMap(this::loadBatch, config.getMaxConcurrency())
+                .subscribe();
+    }
+
+    public Mono<Student> load(Long id) {
+        return Mono.create(sink -> requests.next(new Request(id, sink)));
+    }
+
+    private Mono<Void> loadBatch(List<Request> batch) {
+        Long[] ids = batch.stream().map(Request::id).distinct().toArray(Long[]::new);
+        return metrics.repository("findAllById", ReadRouting.replica(repository.findAllById(ids)))
+                .collectMap(Student::getId, Function.identity())
+                .doOnNext(found -> batch.forEach(request -> request.sink().success(found.get(request.id()))))
+                .doOnError(e -> batch.forEach(request -> request.sink().error(e)))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private static void reject(List<Request> batch) {
+        TransientDataAccessResourceException e = new TransientDataAccessResourceException(
+                "Too many pending findById batches, try again later");
+        batch.forEach(request -> request.sink().error(e));
+    }
+
+    @Override
+    public void destroy() {
+        subscription.dispose();
+    }
+
+    private record Request(Long id, MonoSink<Student> sink) {
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.Student;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Read-through кэш студентов по id.
+ * <p>
+ * В кэше лежат {@link CompletableFuture}, поэтому одновременные промахи по одному id
+ * ждут один и тот же запрос в базу. Отсутствующие id тоже кэшируются, но на короткое время
+ * ({@code student.cache.negative-ttl}), чтобы серия 404 не доходила до базы.
+ * Метрики публикуются в Micrometer под именем {@code cache.*} с тегом {@code cache=students}.
+ */
+@Component
+public class StudentCache {
+
+    private final boolean enabled;
+    private final AsyncCache<Long, Optional<Student>> cache;
+
+    public StudentCache(StudentProperties properties, MeterRegistry meterRegistry) {
+        StudentProperties.Cache config = properties.getCache();
+        this.enabled = config.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfter(new Expiry<Long, Optional<Student>>() {
+                    @Override
+                    public long expireAfterCreate(Long id, Optional<Student> student, long currentTime) {
+                        return (student.isPresent() ? config.getTtl() : config.getNegativeTtl()).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long id, Optional<Student> student, long currentTime, long currentDuration) {
+                        return expireAfterCreate(id, student, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long id, Optional<Student> student, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "students");
+    }
+
+    public Mono<Student> get(Long id, Function<Long, Mono<Student>> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        // отмена одного подписчика не должна отменять загрузку, которую ждут остальные
+        return Mono.fromFuture(() -> cache.get(id, (key, executor) -> loader.apply(key)
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .toFuture()), true)
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    /**
+     * Студент без версии не кладется, а вытесняет старую запись: иначе ответы из кэша остались бы без ETag.
+     */
+    public void put(Student student) {
+        if (student.getVersion() == null) {
+            invalidate(student.getId());
+        } else if (enabled) {
+            cache.put(student.getId(), CompletableFuture.completedFuture(Optional.of(student)));
+        }
+    }
+
+    public void invalidate(Long id) {
+        cache.synchronous().invalidate(id);
+    }
+
+}
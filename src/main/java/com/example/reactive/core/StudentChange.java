@@ -0,0 +1,65 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.Student;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Событие потока {@code GET /students/changes}. {@code epoch} и {@code sequence} уходят в SSE как id события
+ * ({@link #eventId()}) и возвращаются клиентом в {@code Last-Event-ID} при переподключении.
+ * {@code epoch} свой у каждого процесса: номер после перезапуска начинается заново и без него
+ * совпал бы с номером другого события.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StudentChange {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        /**
+         * Клиент отстал или пропущенные события уже вытеснены из буфера: нужно перечитать список целиком.
+         */
+        RESYNC
+    }
+
+    private String epoch;
+
+    private long sequence;
+
+    private Type type;
+
+    private Long id;
+
+    private String name;
+
+    static StudentChange of(String epoch, long sequence, Type type, Student student) {
+        return new StudentChange(epoch, sequence, type, student.getId(), student.getName());
+    }
+
+    public String eventId() {
+        return epoch + "-" + sequence;
+    }
+
+    /**
+     * Разобранный {@code Last-Event-ID}.
+     */
+    public record EventId(String epoch, long sequence) {
+
+        /**
+         * @throws IllegalArgumentException если это не id из {@link #eventId()}
+         */
+        public static EventId parse(String value) {
+            int at = value.lastIndexOf('-');
+            if (at <= 0) {
+                throw new IllegalArgumentException("Malformed event id: " + value);
+            }
+            return new EventId(value.substring(0, at), Long.parseLong(value.substring(at + 1)));
+        }
+
+    }
+
+}
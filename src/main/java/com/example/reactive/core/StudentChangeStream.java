@@ -0,0 +1,133 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.Student;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Поток изменений студентов, которые прошли через {@link StudentService}.
+ * <p>
+ * Все подписчики висят на одном multicast-источнике. Последние {@code student.changes.replay-size}
+ * событий хранятся в кольцевом буфере, из него подписчик с {@code Last-Event-ID} получает пропущенное:
+ * сначала копию пропущенного, затем живой поток. У живого потока каждого подписчика своя очередь ровно на
+ * {@code student.changes.max-pending} событий: источник в нее только кладет и никогда не ждет.
+ * Переполнение очереди, слишком старый {@code Last-Event-ID} или id от другого процесса (другой epoch)
+ * дают событие {@link StudentChange.Type#RESYNC}: при переполнении после него поток завершается.
+ */
+@Component
+public class StudentChangeStream {
+
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private final int maxPending;
+    private final StudentChange[] ring;
+    private final Sinks.Many<StudentChange> sink = Sinks.many().multicast().directBestEffort();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Object lock = new Object();
+    private long sequence;
+
+    public StudentChangeStream(StudentProperties properties, MeterRegistry meterRegistry) {
+        this.maxPending = properties.getChanges().getMaxPending();
+        this.ring = new StudentChange[properties.getChanges().getReplaySize()];
+        Gauge.builder("student.changes.subscribers", subscribers, AtomicInteger::get).register(meterRegistry);
+    }
+
+    public void created(Student student) {
+        publish(StudentChange.Type.CREATED, student);
+    }
+
+    public void updated(Student student) {
+        publish(StudentChange.Type.UPDATED, student);
+    }
+
+    public void deleted(Long id) {
+        publish(StudentChange.Type.DELETED, new Student(id, null));
+    }
+
+    private void publish(StudentChange.Type type, Student student) {
+        // номер, запись в буфер и рассылка под одной блокировкой, иначе подписчик может
+        // получить события не по порядку или потерять событие между повтором и живым потоком
+        synchronized (lock) {
+            StudentChange change = StudentChange.of(epoch, ++sequence, type, student);
+            ring[(int) (change.getSequence() % ring.length)] = change;
+            sink.tryEmitNext(change);
+        }
+    }
+
+    /**
+     * @param lastEventId последнее полученное клиентом событие; {@code null} - только новые события
+     */
+    public Flux<StudentChange> subscribe(@Nullable StudentChange.EventId lastEventId) {
+        return Flux.defer(() -> {
+            // ArrayBlockingQueue не округляет емкость, в отличие от очередей из Queues
+            Sinks.Many<StudentChange> pending = Sinks.many().unicast()
+                    .onBackpressureBuffer(new ArrayBlockingQueue<StudentChange>(maxPending));
+            Disposable.Swap live = Disposables.swap();
+            List<StudentChange> missed;
+            synchronized (lock) {
+                missed = missed(lastEventId);
+                live.update(sink.asFlux().subscribe(change -> {
+                    if (pending.tryEmitNext(change) == Sinks.EmitResult.FAIL_OVERFLOW) {
+                        // ошибка дойдет до клиента после уже накопленных событий
+                        pending.tryEmitError(new Overflow(change.getSequence()));
+                        live.dispose();
+                    }
+                }));
+            }
+            subscribers.incrementAndGet();
+            return Flux.concat(Flux.fromIterable(missed), pending.asFlux()
+                            // отдаем клиенту на своем потоке, чтобы запись в сокет не шла на потоке публикации;
+                            // prefetch 1, чтобы сверх max-pending в пути было не больше одного события
+                            .publishOn(Schedulers.parallel(), 1)
+                            .onErrorResume(Overflow.class, e -> Flux.just(resync(e.sequence))))
+                    .doFinally(signal -> {
+                        live.dispose();
+                        subscribers.decrementAndGet();
+                    });
+        });
+    }
+
+    private List<StudentChange> missed(@Nullable StudentChange.EventId lastEventId) {
+        if (lastEventId == null || epoch.equals(lastEventId.epoch()) && lastEventId.sequence() == sequence) {
+            return List.of();
+        }
+        long oldest = Math.max(1, sequence - ring.length + 1);
+        // другой epoch - клиент видел другой процесс (например, до перезапуска)
+        if (!epoch.equals(lastEventId.epoch()) || lastEventId.sequence() > sequence || lastEventId.sequence() + 1 < oldest) {
+            return List.of(resync(sequence));
+        }
+        List<StudentChange> missed = new ArrayList<>((int) (sequence - lastEventId.sequence()));
+        for (long s = lastEventId.sequence() + 1; s <= sequence; s++) {
+            missed.add(ring[(int) (s % ring.length)]);
+        }
+        return missed;
+    }
+
+    private StudentChange resync(long sequence) {
+        return new StudentChange(epoch, sequence, StudentChange.Type.RESYNC, null, null);
+    }
+
+    private static final class Overflow extends RuntimeException {
+
+        private final long sequence;
+
+        private Overflow(long sequence) {
+            super("Change stream subscriber fell behind at " + sequence, null, false, false);
+            this.sequence = sequence;
+        }
+
+    }
+
+}
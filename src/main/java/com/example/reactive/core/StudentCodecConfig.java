@@ -0,0 +1,27 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.Student;
+import org.springframework.boot.rsocket.messaging.RSocketStrategiesCustomizer;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Пользовательские кодеки встают в списке перед стандартными, поэтому {@link Student} в JSON и NDJSON
+ * пишет {@link StudentJsonEncoder}, а все остальное по-прежнему Jackson. Чтение не меняется.
+ * Для RSocket тот же кодек ставится первым в {@code RSocketStrategies}.
+ */
+@Configuration
+public class StudentCodecConfig {
+
+    @Bean
+    public CodecCustomizer studentCodecCustomizer() {
+        return configurer -> configurer.customCodecs().registerWithDefaultConfig(new StudentJsonEncoder());
+    }
+
+    @Bean
+    public RSocketStrategiesCustomizer studentRSocketStrategiesCustomizer() {
+        return strategies -> strategies.encoders(encoders -> encoders.add(0, new StudentJsonEncoder()));
+    }
+
+}
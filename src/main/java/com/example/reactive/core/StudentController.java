@@ -1,33 +1,201 @@
 package com.example.reactive.core;
 
+import com.example.reactive.core.repository.SearchMode;
 import com.example.reactive.core.repository.Student;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.lang.Nullable;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
 @RestController
 @RequestMapping("/students")
 public class StudentController {
 
+    public static final String NEXT_PAGE_TOKEN = "X-Next-Page-Token";
+
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
     private final StudentService studentService;
+    private final StudentProperties properties;
+    private final StudentExporter studentExporter;
 
-    public StudentController(StudentService studentService) {
+    public StudentController(StudentService studentService, StudentProperties properties, StudentExporter studentExporter) {
         this.studentService = studentService;
+        this.properties = properties;
+        this.studentExporter = studentExporter;
     }
 
+    /**
+     * ETag - версия строки; на {@code If-None-Match} с той же версией Spring сам отвечает 304 без тела.
+     */
     @GetMapping("/{id}")
     public Mono<ResponseEntity<Student>> getStudent(@PathVariable Long id) {
         return studentService.findStudentById(id)
-                .map(ResponseEntity::ok)
+                .map(student -> withETag(ResponseEntity.ok(), student).body(student))
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
-    @GetMapping
-    public Flux<Student> listStudents(@RequestParam(value = "name", required = false) @Nullable String name) {
-        return studentService.findStudentsByName(name);
+    @GetMapping(params = "ids")
+    public Flux<Student> getStudents(@RequestParam("ids") List<Long> ids) {
+        if (ids.size() > properties.getPage().getMaxSize()) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many ids"));
+        }
+        return studentService.findStudentsByIds(ids);
+    }
+
+    /**
+     * Отдает одну страницу. Если за ней есть еще записи, токен следующей страницы
+     * приходит в заголовке {@value #NEXT_PAGE_TOKEN} и передается обратно в параметре after.
+     * <p>
+     * ETag страницы - версия всей таблицы: если с прошлого запроса ничего не менялось,
+     * на {@code If-None-Match} отвечаем 304 после одного маленького запроса, не читая саму страницу.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<List<Student>>> listStudents(@RequestParam(value = "name", required = false) @Nullable String name,
+                                                            @RequestParam(value = "limit", required = false) @Nullable Integer limit,
+                                                            @RequestParam(value = "after", required = false) @Nullable String after,
+                                                            ServerWebExchange exchange) {
+        int pageSize = properties.getPage().resolve(limit);
+        long afterId = PageToken.decode(after);
+        // версия и страница читаются с одного сервера, иначе ETag мог бы опередить содержимое
+        return ReadRouting.replica(studentService.tableVersion()
+                .map(StudentController::etag)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(etag -> {
+                    if (etag.isPresent() && exchange.checkNotModified(etag.get())) {
+                        return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag.get()).build());
+                    }
+                    return page(name, afterId, pageSize, etag.orElse(null));
+                }));
+    }
+
+    private Mono<ResponseEntity<List<Student>>> page(@Nullable String name, long afterId, int pageSize, @Nullable String etag) {
+        // одна лишняя строка говорит о том, что следующая страница существует
+        return studentService.findStudentsPage(name, afterId, pageSize + 1)
+                .collectList()
+                .map(students -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (etag != null) {
+                        response.eTag(etag);
+                    }
+                    if (students.size() <= pageSize) {
+                        return response.body(students);
+                    }
+                    List<Student> page = students.subList(0, pageSize);
+                    return response
+                            .header(NEXT_PAGE_TOKEN, PageToken.encode(page.get(pageSize - 1).getId()))
+                            .body(page);
+                });
+    }
+
+    /**
+     * Для {@code application/x-ndjson} список не режется на страницы, а стримится целиком:
+     * каждая строка пишется в сокет сразу, как только пришла из базы.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Student> streamStudents(@RequestParam(value = "name", required = false) @Nullable String name) {
+        return studentService.streamStudents(name);
+    }
+
+    /**
+     * SSE с изменениями вместо опроса списка. id события - epoch процесса и номер изменения; браузер сам присылает его
+     * в {@code Last-Event-ID} при переподключении, и пропущенное досылается из буфера. Событие
+     * {@code resync} значит, что часть изменений потеряна и список нужно перечитать.
+     */
+    @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<StudentChange>> streamChanges(@RequestHeader(value = "Last-Event-ID", required = false)
+                                                              @Nullable String lastEventId) {
+        Flux<ServerSentEvent<StudentChange>> changes = studentService.changes(parseEventId(lastEventId))
+                .map(change -> ServerSentEvent.builder(change)
+                        .id(change.eventId())
+                        .event(change.getType().name().toLowerCase(Locale.ROOT))
+                        .build());
+        // первый комментарий сразу отправляет заголовки, клиент видит, что подписка состоялась
+        Flux<ServerSentEvent<StudentChange>> heartbeat = Flux.interval(Duration.ZERO, properties.getChanges().getHeartbeat())
+                .map(tick -> ServerSentEvent.<StudentChange>builder().comment("").build());
+        // одна подписка на изменения; комментарии идут, пока поток изменений не завершится
+        return changes.publish(shared -> shared.mergeWith(heartbeat).takeUntilOther(shared.then(Mono.just(true))));
+    }
+
+    @Nullable
+    private static StudentChange.EventId parseEventId(@Nullable String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return null;
+        }
+        try {
+            return StudentChange.EventId.parse(lastEventId.trim());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed Last-Event-ID: " + lastEventId);
+        }
+    }
+
+    /**
+     * Полная выгрузка или диапазон {@code from <= id < to} в CSV или NDJSON, по умолчанию в gzip.
+     * Параллельная выгрузка: диапазоны берутся из {@code GET /students/export/ranges}.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<Flux<DataBuffer>> exportStudents(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                                           @RequestParam(value = "from", defaultValue = "0") long from,
+                                                           @RequestParam(value = "to", defaultValue = "" + Long.MAX_VALUE) long to,
+                                                           @RequestParam(value = "compression", defaultValue = "gzip") String compression) {
+        ExportFormat exportFormat = parseEnum(ExportFormat.class, format, "export format");
+        boolean gzip = switch (compression.toLowerCase(Locale.ROOT)) {
+            case "gzip" -> true;
+            case "none" -> false;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported compression: " + compression);
+        };
+        String fileName = "students-" + from + "-" + (to == Long.MAX_VALUE ? "end" : to) + "." + exportFormat.getExtension()
+                + (gzip ? ".gz" : "");
+        // сжатый файл отдается как gzip-файл, а не как CSV/NDJSON с Content-Encoding: иначе клиенты,
+        // которые понимают Content-Encoding, распакуют его и сохранят несжатым под именем .gz
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(gzip ? GZIP : exportFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString());
+        return response.body(studentExporter.export(exportFormat, from, to, gzip));
+    }
+
+    @GetMapping("/export/ranges")
+    public Mono<List<StudentExporter.Range>> exportRanges(@RequestParam(value = "parts", defaultValue = "4") int parts) {
+        if (parts < 1 || parts > 1024) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "parts must be between 1 and 1024"));
+        }
+        return studentExporter.ranges(parts);
+    }
+
+    @GetMapping("/search")
+    public Flux<Student> searchStudents(@RequestParam("q") String query,
+                                        @RequestParam(value = "mode", defaultValue = "prefix") String mode,
+                                        @RequestParam(value = "limit", required = false) @Nullable Integer limit) {
+        return studentService.searchStudents(query, searchMode(mode), properties.getPage().resolve(limit));
+    }
+
+    private static SearchMode searchMode(String mode) {
+        return parseEnum(SearchMode.class, mode, "search mode");
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, String what) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown " + what + ": " + value);
+        }
     }
 
     @PostMapping
@@ -35,19 +203,72 @@ public class StudentController {
         return studentService.addNewStudent(student);
     }
 
+    @PostMapping(path = "/batch",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<Student> addNewStudents(@RequestBody Flux<Student> students) {
+        return studentService.addNewStudents(students);
+    }
+
+    /**
+     * С {@code If-Match} имя меняется, только если ETag совпадает с текущей версией строки, иначе 412.
+     */
     @PutMapping("/{id}")
-    public Mono<ResponseEntity<Student>> updateStudent(@PathVariable Long id, @RequestBody Student student) {
-        return studentService.updateStudent(id, student)
-                .map(ResponseEntity::ok)
+    public Mono<ResponseEntity<Student>> updateStudent(@PathVariable Long id, @RequestBody Student student,
+                                                       @RequestHeader HttpHeaders headers) {
+        return studentService.updateStudent(id, student, expectedVersions(headers))
+                .map(updated -> withETag(ResponseEntity.ok(), updated).body(updated))
+                .onErrorMap(OptimisticLockingFailureException.class, StudentController::preconditionFailed)
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{id}")
 //    @PreAuthorize("hasRole('ADMIN')")
-    public Mono<ResponseEntity<Void>> deleteStudent(@PathVariable Long id) {
-        return studentService.findStudentById(id)
-                .flatMap(s -> studentService.deleteStudent(s).then(Mono.just(new ResponseEntity<Void>(HttpStatus.OK))))
+    public Mono<ResponseEntity<Void>> deleteStudent(@PathVariable Long id, @RequestHeader HttpHeaders headers) {
+        return studentService.deleteStudent(id, expectedVersions(headers))
+                .map(deleted -> new ResponseEntity<Void>(HttpStatus.OK))
+                .onErrorMap(OptimisticLockingFailureException.class, StudentController::preconditionFailed)
                 .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
+    static String etag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    private static ResponseEntity.BodyBuilder withETag(ResponseEntity.BodyBuilder response, Student student) {
+        return student.getVersion() != null ? response.eTag(etag(student.getVersion())) : response;
+    }
+
+    /**
+     * Версии из {@code If-Match}; null - заголовка нет или в нем {@code *}, то есть без проверки.
+     * If-Match сравнивает ETag строго, поэтому слабые и чужие ETag не совпадают ни с одной версией.
+     */
+    @Nullable
+    private static List<Long> expectedVersions(HttpHeaders headers) {
+        List<String> tags;
+        try {
+            tags = headers.getIfMatch();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed If-Match: " + headers.getFirst(HttpHeaders.IF_MATCH));
+        }
+        if (tags.isEmpty() || tags.contains("*")) {
+            return null;
+        }
+        List<Long> versions = new ArrayList<>(tags.size());
+        for (String tag : tags) {
+            if (tag.startsWith("\"") && tag.endsWith("\"") && tag.length() > 2) {
+                try {
+                    versions.add(Long.parseLong(tag.substring(1, tag.length() - 1)));
+                } catch (NumberFormatException ignored) {
+                    // не наш ETag, ни с чем не совпадает
+                }
+            }
+        }
+        return versions;
+    }
+
+    private static ResponseStatusException preconditionFailed(OptimisticLockingFailureException e) {
+        return new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, e.getMessage());
+    }
+
 }
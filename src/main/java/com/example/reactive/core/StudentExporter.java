@@ -0,0 +1,216 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.RepositoryWithDatabaseClient;
+import com.example.reactive.core.repository.Student;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Выгрузка таблицы студентов для аналитики.
+ * <p>
+ * Строки читаются курсором ({@code student.stream.fetch-size}) и кодируются пачками по
+ * {@code student.export.chunk-rows}; каждая пачка сразу сжимается с sync flush и уходит в ответ
+ * отдельным чанком. Следующую пачку сервер запрашивает у базы, только когда сокет готов принять
+ * предыдущую, поэтому в памяти на запрос держится одна пачка, сколько бы строк ни было в таблице.
+ * При шардах ({@link StudentShards}) курсоры всех шардов сливаются по id.
+ */
+@Component
+@RequiredArgsConstructor
+public class StudentExporter {
+
+    private final RepositoryWithDatabaseClient repositoryWithDatabaseClient;
+    private final StudentProperties properties;
+    private final Optional<StudentShards> studentShards;
+
+    /**
+     * @param from   первый id, включительно
+     * @param to     id, на котором выгрузка останавливается, не включительно
+     * @param gzip   сжимать ли поток; иначе он идет как есть
+     */
+    public Flux<DataBuffer> export(ExportFormat format, long from, long to, boolean gzip) {
+        StudentProperties.Export config = properties.getExport();
+        int fetchSize = properties.getStream().getFetchSize();
+        Flux<Student> rows = studentShards
+                .map(shards -> shards.merge(Comparator.comparing(Student::getId), shard -> shard.findRange(from, to, fetchSize)))
+                .orElseGet(() -> ReadRouting.replica(repositoryWithDatabaseClient.findRange(from, to, fetchSize)));
+        return Flux.using(
+                () -> new ChunkEncoder(format, gzip ? config.getCompressionLevel() : null),
+                encoder -> rows
+                        .buffer(config.getChunkRows())
+                        .map(encoder::encode)
+                        .startWith(Mono.fromCallable(encoder::header))
+                        .concatWith(Mono.fromCallable(encoder::finish))
+                        .filter(bytes -> bytes.length > 0)
+                        .map(DefaultDataBufferFactory.sharedInstance::wrap),
+                ChunkEncoder::close);
+    }
+
+    /**
+     * Делит диапазон id на {@code parts} равных кусков для параллельной выгрузки.
+     * Куски равны по id, а не по числу строк, поэтому при дырах в id могут отличаться по размеру.
+     */
+    public Mono<List<Range>> ranges(int parts) {
+        Mono<long[]> idBounds = studentShards
+                .map(shards -> shards.all(RepositoryWithDatabaseClient::findIdBounds)
+                        .reduce((a, b) -> new long[]{Math.min(a[0], b[0]), Math.max(a[1], b[1])}))
+                .orElseGet(() -> ReadRouting.replica(repositoryWithDatabaseClient.findIdBounds()));
+        return idBounds
+                .map(bounds -> split(bounds[0], bounds[1] + 1, parts))
+                .defaultIfEmpty(List.of());
+    }
+
+    static List<Range> split(long from, long to, int parts) {
+        long step = Math.max(1, (to - from + parts - 1) / parts);
+        List<Range> ranges = new ArrayList<>(parts);
+        for (long start = from; start < to; start += step) {
+            ranges.add(new Range(start, Math.min(to, start + step)));
+        }
+        return ranges;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Range {
+
+        private long from;
+
+        private long to;
+
+    }
+
+    /**
+     * Кодирует пачки в переиспользуемый буфер; при сжатии gzip-поток живет весь запрос,
+     * а после каждой пачки делается sync flush, чтобы клиент мог распаковывать по мере получения.
+     */
+    private static final class ChunkEncoder {
+
+        private static final byte[] CSV_HEADER = "id,name\n".getBytes(StandardCharsets.US_ASCII);
+
+        private final ExportFormat format;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+        private final OutputStream out;
+        private byte[] scratch = new byte[256];
+
+        private ChunkEncoder(ExportFormat format, @Nullable Integer compressionLevel) {
+            this.format = format;
+            this.out = compressionLevel == null ? buffer : gzip(buffer, compressionLevel);
+        }
+
+        private static OutputStream gzip(OutputStream target, int level) {
+            try {
+                return new GZIPOutputStream(target, 8 * 1024, true) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        byte[] header() throws IOException {
+            if (format == ExportFormat.CSV) {
+                out.write(CSV_HEADER);
+            }
+            return drain();
+        }
+
+        byte[] encode(List<Student> students) {
+            try {
+                for (Student student : students) {
+                    int length = format == ExportFormat.CSV ? writeCsv(student) : writeJson(student);
+                    out.write(scratch, 0, length);
+                }
+                return drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        byte[] finish() throws IOException {
+            if (out instanceof GZIPOutputStream gzip) {
+                gzip.finish();
+            }
+            return drain();
+        }
+
+        private byte[] drain() throws IOException {
+            out.flush();
+            byte[] bytes = buffer.toByteArray();
+            buffer.reset();
+            return bytes;
+        }
+
+        void close() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private int writeJson(Student student) {
+            ensureCapacity(StudentJsonEncoder.maxLength(student) + 1);
+            int length = StudentJsonEncoder.writeStudent(student, scratch, 0);
+            scratch[length++] = '\n';
+            return length;
+        }
+
+        /**
+         * Имя берется в кавычки, только если в нем есть запятая, кавычка или перевод строки.
+         */
+        private int writeCsv(Student student) {
+            String name = student.getName() == null ? "" : student.getName();
+            ensureCapacity(22);
+            int pos = 0;
+            if (student.getId() != null) {
+                pos = StudentJsonEncoder.writeLong(student.getId(), scratch, pos);
+            }
+            scratch[pos++] = ',';
+            boolean quote = name.indexOf(',') >= 0 || name.indexOf('"') >= 0
+                    || name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0;
+            if (quote) {
+                scratch[pos++] = '"';
+            }
+            byte[] bytes = quote ? name.replace("\"", "\"\"").getBytes(StandardCharsets.UTF_8)
+                    : name.getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(pos + bytes.length + 2);
+            System.arraycopy(bytes, 0, scratch, pos, bytes.length);
+            pos += bytes.length;
+            if (quote) {
+                scratch[pos++] = '"';
+            }
+            scratch[pos++] = '\n';
+            return pos;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (scratch.length < capacity) {
+                scratch = Arrays.copyOf(scratch, Math.max(capacity, scratch.length * 2));
+            }
+        }
+
+    }
+
+}
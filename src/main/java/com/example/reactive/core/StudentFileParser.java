@@ -0,0 +1,315 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.Student;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Разбирает студентов прямо из байтов (обычно отображенного в память куска файла), без строк на каждую
+ * строку файла: строкой становится только имя.
+ * <p>
+ * CSV - в том виде, в каком его пишет {@link StudentExporter}: колонки {@code id,name} или только {@code name},
+ * экранирование по RFC 4180. NDJSON - объект на строку с полями {@code id} и {@code name}, прочие поля пропускаются.
+ * Пустые строки пропускаются. Позиция всегда стоит на начале следующей строки, ее и сохраняет checkpoint.
+ */
+final class StudentFileParser {
+
+    private final ByteBuffer buffer;
+    private final ExportFormat format;
+    private final boolean idColumn;
+    private final int limit;
+    private int pos;
+    private byte[] scratch = new byte[256];
+
+    /**
+     * @param idColumn для CSV: первая колонка - id
+     */
+    StudentFileParser(ByteBuffer buffer, int position, ExportFormat format, boolean idColumn) {
+        this.buffer = buffer;
+        this.format = format;
+        this.idColumn = idColumn;
+        this.limit = buffer.limit();
+        this.pos = position;
+    }
+
+    int position() {
+        return pos;
+    }
+
+    /**
+     * @return до {@code max} студентов; пустой список - кусок закончился
+     */
+    List<Student> next(int max) {
+        List<Student> students = new ArrayList<>(Math.min(max, 1024));
+        while (students.size() < max) {
+            skipEmptyLines();
+            if (pos >= limit) {
+                break;
+            }
+            int lineStart = pos;
+            try {
+                students.add(format == ExportFormat.CSV ? csvLine() : jsonLine());
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Malformed " + format + " line at segment offset " + lineStart, e);
+            }
+        }
+        return students;
+    }
+
+    /**
+     * Заголовок CSV: {@code id,name} или {@code name}.
+     *
+     * @return есть ли колонка id
+     */
+    static boolean csvHeaderHasId(String header) {
+        String normalized = header.strip().toLowerCase(Locale.ROOT);
+        return switch (normalized) {
+            case "id,name" -> true;
+            case "name" -> false;
+            default -> throw new IllegalArgumentException("Expected CSV header 'id,name' or 'name', got '" + header + "'");
+        };
+    }
+
+    private void skipEmptyLines() {
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b != '\n' && b != '\r') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private Student csvLine() {
+        Long id = null;
+        if (idColumn) {
+            id = parseLong();
+            expect((byte) ',');
+        }
+        String name;
+        if (pos < limit && buffer.get(pos) == '"') {
+            name = quotedCsvField();
+        } else {
+            int start = pos;
+            while (pos < limit && buffer.get(pos) != '\n') {
+                pos++;
+            }
+            int end = pos > start && buffer.get(pos - 1) == '\r' ? pos - 1 : pos;
+            name = utf8(start, end - start);
+        }
+        endOfLine();
+        return new Student(id, name);
+    }
+
+    private String quotedCsvField() {
+        pos++;
+        int length = 0;
+        while (true) {
+            if (pos >= limit) {
+                throw new IllegalArgumentException("Unterminated quoted field");
+            }
+            byte b = buffer.get(pos++);
+            if (b == '"') {
+                if (pos < limit && buffer.get(pos) == '"') {
+                    pos++;
+                } else {
+                    return new String(scratch, 0, length, StandardCharsets.UTF_8);
+                }
+            }
+            ensureCapacity(length + 1);
+            scratch[length++] = b;
+        }
+    }
+
+    private Student jsonLine() {
+        Long id = null;
+        String name = null;
+        skipWhitespace();
+        expect((byte) '{');
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+        } else {
+            while (true) {
+                skipWhitespace();
+                String key = jsonString();
+                skipWhitespace();
+                expect((byte) ':');
+                skipWhitespace();
+                switch (key) {
+                    case "id" -> id = literalNull() ? null : parseLong();
+                    case "name" -> name = literalNull() ? null : jsonString();
+                    default -> skipJsonValue();
+                }
+                skipWhitespace();
+                byte b = buffer.get(pos++);
+                if (b == '}') {
+                    break;
+                }
+                if (b != ',') {
+                    throw new IllegalArgumentException("Expected ',' or '}'");
+                }
+            }
+        }
+        skipWhitespace();
+        endOfLine();
+        return new Student(id, name);
+    }
+
+    private String jsonString() {
+        expect((byte) '"');
+        int start = pos;
+        // быстрый путь: строка без экранирования декодируется прямо из буфера
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b == '"') {
+                String value = utf8(start, pos - start);
+                pos++;
+                return value;
+            }
+            if (b == '\\') {
+                break;
+            }
+            pos++;
+        }
+        StringBuilder value = new StringBuilder(utf8(start, pos - start));
+        int chunk = pos;
+        while (true) {
+            if (pos >= limit) {
+                throw new IllegalArgumentException("Unterminated string");
+            }
+            byte b = buffer.get(pos);
+            if (b == '"') {
+                value.append(utf8(chunk, pos - chunk));
+                pos++;
+                return value.toString();
+            }
+            if (b != '\\') {
+                pos++;
+                continue;
+            }
+            value.append(utf8(chunk, pos - chunk));
+            pos++;
+            byte escape = buffer.get(pos++);
+            switch (escape) {
+                case '"', '\\', '/' -> value.append((char) escape);
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'u' -> {
+                    value.append((char) Integer.parseInt(ascii(pos, 4), 16));
+                    pos += 4;
+                }
+                default -> throw new IllegalArgumentException("Bad escape \\" + (char) escape);
+            }
+            chunk = pos;
+        }
+    }
+
+    private void skipJsonValue() {
+        byte b = peek();
+        if (b == '"') {
+            jsonString();
+            return;
+        }
+        if (b == '{' || b == '[') {
+            throw new IllegalArgumentException("Nested values are not supported");
+        }
+        while (pos < limit) {
+            b = buffer.get(pos);
+            if (b == ',' || b == '}' || b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private boolean literalNull() {
+        if (pos + 4 <= limit && buffer.get(pos) == 'n' && buffer.get(pos + 1) == 'u'
+                && buffer.get(pos + 2) == 'l' && buffer.get(pos + 3) == 'l') {
+            pos += 4;
+            return true;
+        }
+        return false;
+    }
+
+    private long parseLong() {
+        boolean negative = pos < limit && buffer.get(pos) == '-';
+        if (negative) {
+            pos++;
+        }
+        int start = pos;
+        long value = 0;
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = Math.addExact(Math.multiplyExact(value, 10), b - '0');
+            pos++;
+        }
+        if (pos == start) {
+            throw new IllegalArgumentException("Expected a number");
+        }
+        return negative ? -value : value;
+    }
+
+    private void skipWhitespace() {
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b != ' ' && b != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private void endOfLine() {
+        if (pos < limit && buffer.get(pos) == '\r') {
+            pos++;
+        }
+        if (pos < limit) {
+            expect((byte) '\n');
+        }
+    }
+
+    private byte peek() {
+        if (pos >= limit) {
+            throw new IllegalArgumentException("Unexpected end of segment");
+        }
+        return buffer.get(pos);
+    }
+
+    private void expect(byte expected) {
+        if (peek() != expected) {
+            throw new IllegalArgumentException("Expected '" + (char) expected + "'");
+        }
+        pos++;
+    }
+
+    private String utf8(int start, int length) {
+        ensureCapacity(length);
+        buffer.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private String ascii(int start, int length) {
+        ensureCapacity(length);
+        buffer.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (scratch.length < capacity) {
+            scratch = Arrays.copyOf(scratch, Math.max(capacity, scratch.length * 2));
+        }
+    }
+
+}
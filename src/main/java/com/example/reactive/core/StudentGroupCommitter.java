@@ -0,0 +1,99 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.RepositoryWithDatabaseClient;
+import com.example.reactive.core.repository.Student;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Group commit для одиночных вставок: одновременные {@code POST /students} пишутся
+ * одним многострочным insert, то есть одной транзакцией и одним fsync на пачку.
+ * <p>
+ * Вставки копятся до {@code student.group-commit.max-batch-size} штук или до истечения
+ * {@code student.group-commit.window}. Строки вставляются в порядке пачки, а id берутся из
+ * последовательности по возрастанию, поэтому отсортированный по id результат сопоставляется
+ * с ожидающими {@link Mono} по позиции. Если пачка не записалась (например, одна строка нарушает
+ * ограничение), каждая строка пишется отдельно, и ошибку получает только ее автор.
+ * Пачек в очереди не больше {@code student.group-commit.max-pending-batches}, лишние сразу
+ * получают {@link TransientDataAccessResourceException}.
+ */
+@Component
+public class StudentGroupCommitter implements DisposableBean {
+
+    private final RepositoryWithDatabaseClient repository;
+    private final PipelineMetrics metrics;
+    private final Disposable subscription;
+    private FluxSink<Request> requests;
+
+    public StudentGroupCommitter(RepositoryWithDatabaseClient repository, StudentProperties properties, PipelineMetrics metrics) {
+        this.repository = repository;
+        this.metrics = metrics;
+        StudentProperties.GroupCommit config = properties.getGroupCommit();
+        // FluxSink из Flux.create сериализует next, поэтому писать в него можно из любого потока
+        this.subscription = Flux.<Request>create(sink -> this.requests = sink)
+                .bufferTimeout(config.getMaxBatchSize(), config.getWindow())
+                // как и в StudentBatchLoader, bufferTimeout не ждет спроса, пачки копятся здесь, но не больше max-pending-batches
+                .onBackpressureBuffer(config.getMaxPendingBatches(), StudentGroupCommitter::reject, BufferOverflowStrategy.DROP_LATEST)
+                .flatMap(this::insertBatch, config.getMaxConcurrency())
+                .subscribe();
+    }
+
+    public Mono<Student> insert(Student student) {
+        return Mono.create(sink -> requests.next(new Request(student, sink)));
+    }
+
+    private Mono<Void> insertBatch(List<Request> batch) {
+        return metrics.repository("groupInsert", ReadRouting.write(repository.insertAll(batch.stream().map(Request::student).toList())))
+                .sort(Comparator.comparing(Student::getId))
+                .collectList()
+                // пачка не записалась целиком - пробуем по одной, чтобы ошибку получила только плохая строка
+                .onErrorResume(e -> Flux.fromIterable(batch).flatMap(this::insertOne).then(Mono.empty()))
+                .doOnNext(inserted -> complete(batch, inserted))
+                .then();
+    }
+
+    private static void complete(List<Request> batch, List<Student> inserted) {
+        if (inserted.size() != batch.size()) {
+            IllegalStateException e = new IllegalStateException(
+                    "Inserted " + inserted.size() + " rows for a batch of " + batch.size());
+            batch.forEach(request -> request.sink().error(e));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).sink().success(inserted.get(i));
+        }
+    }
+
+    private static void reject(List<Request> batch) {
+        TransientDataAccessResourceException e = new TransientDataAccessResourceException(
+                "Too many pending insert batches, try again later");
+        batch.forEach(request -> request.sink().error(e));
+    }
+
+    private Mono<Void> insertOne(Request request) {
+        return Mono.defer(() -> metrics.repository("insert", ReadRouting.write(repository.insert(request.student()))))
+                .doOnNext(request.sink()::success)
+                .doOnError(request.sink()::error)
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    @Override
+    public void destroy() {
+        subscription.dispose();
+    }
+
+    private record Request(Student student, MonoSink<Student> sink) {
+    }
+
+}
@@ -0,0 +1,250 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.RepositoryWithDatabaseClient;
+import com.example.reactive.core.repository.Student;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Массовая загрузка студентов из CSV или NDJSON (например, выгрузки {@link StudentExporter}) для
+ * восстановления и миграций. Включается свойством {@code student.bulk-import.file} из любого источника;
+ * приложение тогда стартует без веб-сервера ({@link BulkImportEnvironmentPostProcessor}) и завершается после загрузки.
+ * <p>
+ * Файл делится на куски по {@code segment-size}, границы сдвигаются на начало строки. Каждый кусок
+ * отображается в память и разбирается прямо из page cache, без копирования в кучу; пока пачка
+ * пишется в базу, следующая уже разбирается. Куски грузятся параллельно, по соединению на кусок.
+ * <p>
+ * После каждой записанной пачки позиция куска сохраняется в {@link ImportCheckpoint}, поэтому
+ * прерванная загрузка при повторном запуске продолжается с места остановки. Файл checkpoint
+ * удаляется, когда загрузка закончилась успешно.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "student.bulk-import", name = "file")
+public class StudentImportCommand implements CommandLineRunner {
+
+    /** Отображение одного буфера ограничено int-смещениями. */
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    private final RepositoryWithDatabaseClient repository;
+    private final StudentProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Optional<StudentShards> studentShards;
+
+    record Segment(int index, long start, long end) {
+    }
+
+    private record Batch(List<Student> students, long offset) {
+    }
+
+    @Override
+    public void run(String... args) throws IOException {
+        StudentProperties.BulkImport config = properties.getBulkImport();
+        Path file = config.getFile();
+        ExportFormat format = config.getFormat() != null ? config.getFormat() : detectFormat(file);
+        long segmentSize = config.getSegmentSize().toBytes();
+        if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("student.bulk-import.segment-size must be in (0, 1GB]");
+        }
+        Path checkpointPath = config.getCheckpoint() != null ? config.getCheckpoint()
+                : file.resolveSibling(file.getFileName() + ".checkpoint");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long dataStart = 0;
+            boolean idColumn = false;
+            if (format == ExportFormat.CSV) {
+                String header = firstLine(channel);
+                idColumn = StudentFileParser.csvHeaderHasId(header);
+                dataStart = Math.min(size, header.getBytes(StandardCharsets.UTF_8).length + 1L);
+            }
+            if (config.isKeepIds() && format == ExportFormat.CSV && !idColumn) {
+                throw new IllegalArgumentException("student.bulk-import.keep-ids requires an id column in " + file);
+            }
+            List<Segment> segments = segments(channel, dataStart, size, segmentSize, format == ExportFormat.CSV && idColumn);
+            ImportCheckpoint checkpoint = ImportCheckpoint.open(checkpointPath, size, segmentSize, segments);
+            long total = size - dataStart;
+            long resumedFrom = checkpoint.done(segments);
+            if (resumedFrom > 0) {
+                log.info("Resuming import of {} from checkpoint {}, {}% done", file, checkpointPath, percent(resumedFrom, total));
+            }
+
+            Counter rowsCounter = meterRegistry.counter("student.import.rows");
+            AtomicLong rows = new AtomicLong();
+            AtomicLong inserted = new AtomicLong();
+            long started = System.nanoTime();
+            Disposable progress = Flux.interval(config.getProgressInterval())
+                    .subscribe(tick -> log.info("Imported {} rows ({} rows/s), {}% of {}",
+                            rows.get(), rate(rows.get(), started), percent(checkpoint.done(segments), total), file));
+
+            boolean idColumnFinal = idColumn;
+            try {
+                Flux.fromIterable(segments)
+                        .filter(segment -> checkpoint.offset(segment.index()) < segment.end())
+                        .flatMap(segment -> importSegment(channel, segment, format, idColumnFinal, checkpoint)
+                                        .doOnNext(batch -> {
+                                            rows.addAndGet(batch.getT1());
+                                            inserted.addAndGet(batch.getT2());
+                                            rowsCounter.increment(batch.getT1());
+                                        }),
+                                config.getParallelism())
+                        .then(config.isKeepIds() ? resetIdSequence() : Mono.<Void>empty())
+                        .block();
+            } finally {
+                progress.dispose();
+            }
+            checkpoint.delete();
+            log.info("Imported {} rows from {} in {} ms ({} rows/s), {} inserted",
+                    rows.get(), file, (System.nanoTime() - started) / 1_000_000, rate(rows.get(), started), inserted.get());
+        }
+    }
+
+    /**
+     * @return по каждой записанной пачке: строк в файле и строк, реально вставленных
+     */
+    private Flux<Tuple2<Integer, Long>> importSegment(FileChannel channel, Segment segment, ExportFormat format,
+                                                      boolean idColumn, ImportCheckpoint checkpoint) {
+        StudentProperties.BulkImport config = properties.getBulkImport();
+        return Mono.fromCallable(() -> channel.map(FileChannel.MapMode.READ_ONLY, segment.start(), segment.end() - segment.start()))
+                .flatMapMany(buffer -> parse(buffer, segment, format, idColumn, (int) (checkpoint.offset(segment.index()) - segment.start())))
+                // разбор идет на parallel-планировщике, а пока пишется одна пачка, следующая уже готовится
+                .subscribeOn(Schedulers.parallel(), true)
+                .concatMap(batch -> importAll(batch.students(), config.isKeepIds())
+                        // запись checkpoint - это запись файла и rename, не на потоке ввода-вывода R2DBC
+                        .publishOn(Schedulers.boundedElastic())
+                        .map(count -> {
+                            checkpoint.advance(segment.index(), batch.offset());
+                            return Tuples.of(batch.students().size(), count);
+                        }), 2);
+    }
+
+    /**
+     * При шардах строки с готовыми id раскладываются по их шардам, без id - пачка целиком в следующий шард.
+     */
+    private Mono<Long> importAll(List<Student> students, boolean keepIds) {
+        return studentShards
+                .map(shards -> keepIds
+                        ? shards.forEachShard(students, (shard, part) -> shard.importAll(part, true)).reduce(0L, Long::sum)
+                        : shards.next().importAll(students, false))
+                .orElseGet(() -> repository.importAll(students, keepIds));
+    }
+
+    private Mono<Void> resetIdSequence() {
+        return studentShards.map(StudentShards::alignIdSequences).orElseGet(repository::resetIdSequence);
+    }
+
+    private Flux<Batch> parse(MappedByteBuffer buffer, Segment segment, ExportFormat format, boolean idColumn, int position) {
+        int batchSize = properties.getBulkImport().getBatchSize();
+        return Flux.generate(
+                () -> new StudentFileParser(buffer, position, format, idColumn),
+                (parser, sink) -> {
+                    List<Student> students = parser.next(batchSize);
+                    if (students.isEmpty()) {
+                        sink.complete();
+                    } else {
+                        sink.next(new Batch(students, segment.start() + parser.position()));
+                    }
+                    return parser;
+                });
+    }
+
+    /**
+     * Режет файл на куски, сдвигая каждую границу на начало следующей строки. Для CSV с id строка
+     * должна начинаться с {@code <цифры>,}: так граница не попадет внутрь имени с переводом строки.
+     */
+    static List<Segment> segments(FileChannel channel, long start, long size, long segmentSize, boolean csvWithId) throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        long from = start;
+        while (from < size) {
+            long to = from + segmentSize >= size ? size : lineStart(channel, from + segmentSize, size, csvWithId);
+            if (to - from > MAX_SEGMENT_SIZE) {
+                throw new IllegalArgumentException("No line break within 1GB after offset " + from);
+            }
+            segments.add(new Segment(segments.size(), from, to));
+            from = to;
+        }
+        return segments;
+    }
+
+    private static long lineStart(FileChannel channel, long from, long size, boolean csvWithId) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(64 * 1024);
+        long pos = from;
+        long candidate = -1;
+        int digits = 0;
+        while (pos < size) {
+            window.clear();
+            int read = channel.read(window, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++, pos++) {
+                byte b = window.get(i);
+                if (candidate >= 0) {
+                    if (b >= '0' && b <= '9') {
+                        digits++;
+                        continue;
+                    }
+                    if (b == ',' && digits > 0) {
+                        return candidate;
+                    }
+                    candidate = -1;
+                }
+                if (b == '\n') {
+                    if (!csvWithId) {
+                        return pos + 1;
+                    }
+                    candidate = pos + 1;
+                    digits = 0;
+                }
+            }
+        }
+        return size;
+    }
+
+    private static String firstLine(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(256);
+        int read = Math.max(0, channel.read(header, 0));
+        String text = new String(header.array(), 0, read, StandardCharsets.UTF_8);
+        int end = text.indexOf('\n');
+        return end < 0 ? text : text.substring(0, end);
+    }
+
+    private static ExportFormat detectFormat(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? ExportFormat.CSV : ExportFormat.NDJSON;
+    }
+
+    private static long rate(long rows, long started) {
+        long elapsed = Math.max(1, System.nanoTime() - started);
+        return rows * 1_000_000_000L / elapsed;
+    }
+
+    private static long percent(long done, long total) {
+        return total == 0 ? 100 : done * 100 / total;
+    }
+
+}
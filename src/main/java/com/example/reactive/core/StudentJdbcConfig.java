@@ -0,0 +1,89 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.RepositoryWithJdbc;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Блокирующий режим доступа к данным, {@code student.jdbc.enabled=true}.
+ * <p>
+ * Пул HikariCP не регистрируется как {@code DataSource}, чтобы не подменить источник для Liquibase.
+ * Запросы выполняются на виртуальных потоках, если JVM их умеет (Java 21+); на Java 17
+ * вместо них фиксированный пул по числу соединений, больше потоков все равно ждали бы соединения.
+ * Драйвер Postgres до 42.6 ходит в сеть под {@code synchronized}, поэтому на виртуальных
+ * потоках запрос держит и свой поток-носитель; предел параллелизма в обоих случаях - размер пула.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "student.jdbc", name = "enabled", havingValue = "true")
+public class StudentJdbcConfig {
+
+    @Bean(destroyMethod = "close")
+    public RepositoryWithJdbc repositoryWithJdbc(StudentProperties properties, R2dbcProperties r2dbcProperties,
+                                                 MeterRegistry meterRegistry) {
+        StudentProperties.Jdbc jdbc = properties.getJdbc();
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("student-jdbc");
+        config.setJdbcUrl(jdbc.getUrl() != null ? jdbc.getUrl() : toJdbcUrl(r2dbcProperties.getUrl()));
+        config.setUsername(jdbc.getUrl() != null ? jdbc.getUsername() : r2dbcProperties.getUsername());
+        config.setPassword(jdbc.getUrl() != null ? jdbc.getPassword() : r2dbcProperties.getPassword());
+        config.setMaximumPoolSize(jdbc.getPoolSize());
+        config.setConnectionTimeout(jdbc.getConnectionTimeout().toMillis());
+        config.setMetricRegistry(meterRegistry);
+        HikariDataSource dataSource = new HikariDataSource(config);
+
+        ExecutorService executor = virtualThreadExecutor();
+        if (executor == null) {
+            log.info("Virtual threads are not available, student jdbc calls run on {} platform threads", jdbc.getPoolSize());
+            executor = Executors.newFixedThreadPool(jdbc.getPoolSize(), platformThreads());
+        }
+        ExecutorService finalExecutor = executor;
+        Scheduler scheduler = Schedulers.fromExecutorService(executor, "student-jdbc");
+        return new RepositoryWithJdbc(dataSource, scheduler, () -> {
+            scheduler.dispose();
+            finalExecutor.shutdown();
+            dataSource.close();
+        });
+    }
+
+    /**
+     * {@code r2dbc:postgresql://host:port/db?...} превращается в {@code jdbc:postgresql://host:port/db};
+     * параметры r2dbc-драйвера JDBC не понимает, поэтому отбрасываются.
+     */
+    static String toJdbcUrl(String r2dbcUrl) {
+        String url = r2dbcUrl.replaceFirst("^r2dbc:(pool:)?", "jdbc:");
+        int query = url.indexOf('?');
+        return query < 0 ? url : url.substring(0, query);
+    }
+
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory platformThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "student-jdbc-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
@@ -0,0 +1,288 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.Student;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractEncoder;
+import org.springframework.core.codec.Hints;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageEncoder;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON-кодек только для {@link Student}, без Jackson.
+ * <p>
+ * Объект сначала пишется в переиспользуемый байтовый массив потока, затем одним копированием
+ * в буфер ровно нужного размера из фабрики (для Netty это пул). Вывод совпадает с Jackson:
+ * {@code {"id":1,"name":"..."}}, UTF-8, экранируются кавычка, обратный слеш и управляющие символы,
+ * одиночные суррогаты пишутся как {@code \\uXXXX}.
+ * <p>
+ * Понимает {@code Student}, {@code Collection<Student>} (массив одним буфером) и {@code Flux<Student>}:
+ * для {@code application/json} - потоковый массив, для {@code application/x-ndjson} - строка на элемент.
+ * Регистрируется в {@link StudentCodecConfig} перед стандартными кодеками.
+ */
+public class StudentJsonEncoder extends AbstractEncoder<Object> implements HttpMessageEncoder<Object> {
+
+    private static final byte[] ID = "{\"id\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NAME = ",\"name\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    /** Массивы больше этого не оставляем в ThreadLocal, чтобы редкое длинное имя не держало память. */
+    private static final int MAX_RETAINED_SCRATCH = 64 * 1024;
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+
+    public StudentJsonEncoder() {
+        super(MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON);
+    }
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, @Nullable MimeType mimeType) {
+        if (!supportsMimeType(mimeType)) {
+            return false;
+        }
+        Class<?> clazz = elementType.toClass();
+        if (Student.class.isAssignableFrom(clazz)) {
+            return true;
+        }
+        return Collection.class.isAssignableFrom(clazz)
+                && Student.class.isAssignableFrom(elementType.asCollection().getGeneric(0).toClass());
+    }
+
+    private boolean supportsMimeType(@Nullable MimeType mimeType) {
+        if (mimeType == null) {
+            return true;
+        }
+        if (mimeType.getCharset() != null && !StandardCharsets.UTF_8.equals(mimeType.getCharset())) {
+            return false;
+        }
+        for (MimeType supported : getEncodableMimeTypes()) {
+            if (supported.equalsTypeAndSubtype(mimeType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public List<MediaType> getStreamingMediaTypes() {
+        return List.of(MediaType.APPLICATION_NDJSON);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory, ResolvableType elementType,
+                                   @Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
+        if (inputStream instanceof Mono<?> mono) {
+            return mono.map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints)).flux();
+        }
+        if (mimeType != null && MediaType.APPLICATION_NDJSON.equalsTypeAndSubtype(mimeType)) {
+            return Flux.from(inputStream).map(value -> encodeElement(value, bufferFactory, null, (byte) '\n'));
+        }
+        // массив без сборки в список: первый элемент с '[', остальные с ',', в конце ']'
+        return Flux.defer(() -> {
+            boolean[] first = {true};
+            return Flux.from(inputStream)
+                    .map(value -> {
+                        byte prefix = first[0] ? (byte) '[' : (byte) ',';
+                        first[0] = false;
+                        return encodeElement(value, bufferFactory, prefix, null);
+                    })
+                    .concatWith(Mono.fromSupplier(() -> wrap(bufferFactory, first[0] ? "[]" : "]")));
+        });
+    }
+
+    @Override
+    public DataBuffer encodeValue(Object value, DataBufferFactory bufferFactory, ResolvableType valueType,
+                                  @Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
+        if (!Hints.isLoggingSuppressed(hints) && logger.isDebugEnabled()) {
+            logger.debug(Hints.getLogPrefix(hints) + "Encoding [" + value + "]");
+        }
+        if (value instanceof Collection<?> students) {
+            return encodeArray(students, bufferFactory);
+        }
+        return encodeElement(value, bufferFactory, null, null);
+    }
+
+    private static DataBuffer encodeElement(Object value, DataBufferFactory bufferFactory,
+                                            @Nullable Byte prefix, @Nullable Byte suffix) {
+        Student student = (Student) value;
+        byte[] scratch = scratch(maxLength(student) + 2);
+        int length = 0;
+        if (prefix != null) {
+            scratch[length++] = prefix;
+        }
+        length = writeStudent(student, scratch, length);
+        if (suffix != null) {
+            scratch[length++] = suffix;
+        }
+        DataBuffer buffer = bufferFactory.allocateBuffer(length);
+        buffer.write(scratch, 0, length);
+        release(scratch);
+        return buffer;
+    }
+
+    private static DataBuffer encodeArray(Collection<?> students, DataBufferFactory bufferFactory) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(Math.max(2, students.size() * 32));
+        try {
+            buffer.write((byte) '[');
+            boolean first = true;
+            for (Object value : students) {
+                Student student = (Student) value;
+                byte[] scratch = scratch(maxLength(student) + 1);
+                int length = 0;
+                if (!first) {
+                    scratch[length++] = ',';
+                }
+                first = false;
+                length = writeStudent(student, scratch, length);
+                buffer.write(scratch, 0, length);
+                release(scratch);
+            }
+            buffer.write((byte) ']');
+            return buffer;
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+    }
+
+    private static DataBuffer wrap(DataBufferFactory bufferFactory, String ascii) {
+        byte[] bytes = ascii.getBytes(StandardCharsets.US_ASCII);
+        return bufferFactory.allocateBuffer(bytes.length).write(bytes);
+    }
+
+    /** Верхняя оценка размера: любой символ имени превращается максимум в 6 байт ({@code \\uXXXX}). */
+    static int maxLength(Student student) {
+        String name = student.getName();
+        return ID.length + 20 + NAME.length + (name == null ? NULL.length : name.length() * 6 + 2) + 1;
+    }
+
+    private static byte[] scratch(int capacity) {
+        byte[] scratch = SCRATCH.get();
+        return scratch.length >= capacity ? scratch : new byte[Math.max(capacity, scratch.length * 2)];
+    }
+
+    private static void release(byte[] scratch) {
+        if (scratch.length <= MAX_RETAINED_SCRATCH && scratch != SCRATCH.get()) {
+            SCRATCH.set(scratch);
+        }
+    }
+
+    static int writeStudent(Student student, byte[] out, int pos) {
+        pos = copy(ID, out, pos);
+        Long id = student.getId();
+        pos = id == null ? copy(NULL, out, pos) : writeLong(id, out, pos);
+        pos = copy(NAME, out, pos);
+        String name = student.getName();
+        pos = name == null ? copy(NULL, out, pos) : writeString(name, out, pos);
+        out[pos++] = '}';
+        return pos;
+    }
+
+    private static int copy(byte[] bytes, byte[] out, int pos) {
+        System.arraycopy(bytes, 0, out, pos, bytes.length);
+        return pos + bytes.length;
+    }
+
+    static int writeLong(long value, byte[] out, int pos) {
+        if (value == Long.MIN_VALUE) {
+            return copy(MIN_LONG, out, pos);
+        }
+        if (value < 0) {
+            out[pos++] = '-';
+            value = -value;
+        }
+        int end = pos + digits(value);
+        int i = end;
+        do {
+            out[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        return end;
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    static int writeString(String value, byte[] out, int pos) {
+        out[pos++] = '"';
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c < 0x20) {
+                    pos = writeControl(c, out, pos);
+                } else if (c == '"' || c == '\\') {
+                    out[pos++] = '\\';
+                    out[pos++] = (byte) c;
+                } else {
+                    out[pos++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                out[pos++] = (byte) (0xc0 | (c >> 6));
+                out[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                out[pos++] = (byte) (0xf0 | (cp >> 18));
+                out[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                out[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                out[pos++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                pos = writeUnicodeEscape(c, out, pos);
+            } else {
+                out[pos++] = (byte) (0xe0 | (c >> 12));
+                out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                out[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        out[pos++] = '"';
+        return pos;
+    }
+
+    private static int writeControl(char c, byte[] out, int pos) {
+        byte escape = switch (c) {
+            case '\n' -> 'n';
+            case '\r' -> 'r';
+            case '\t' -> 't';
+            case '\b' -> 'b';
+            case '\f' -> 'f';
+            default -> 0;
+        };
+        if (escape == 0) {
+            return writeUnicodeEscape(c, out, pos);
+        }
+        out[pos++] = '\\';
+        out[pos++] = escape;
+        return pos;
+    }
+
+    private static int writeUnicodeEscape(char c, byte[] out, int pos) {
+        out[pos++] = '\\';
+        out[pos++] = 'u';
+        out[pos++] = HEX[(c >> 12) & 0xf];
+        out[pos++] = HEX[(c >> 8) & 0xf];
+        out[pos++] = HEX[(c >> 4) & 0xf];
+        out[pos++] = HEX[c & 0xf];
+        return pos;
+    }
+
+}
@@ -0,0 +1,411 @@
+package com.example.reactive.core;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.lang.Nullable;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки приложения с префиксом {@code student}.
+ */
+@Data
+@ConfigurationProperties(prefix = "student")
+public class StudentProperties {
+
+    private final Batch batch = new Batch();
+
+    private final Page page = new Page();
+
+    private final Stream stream = new Stream();
+
+    private final Cache cache = new Cache();
+
+    private final Loader loader = new Loader();
+
+    private final Snapshot snapshot = new Snapshot();
+
+    private final GroupCommit groupCommit = new GroupCommit();
+
+    private final Limiter limiter = new Limiter();
+
+    private final Changes changes = new Changes();
+
+    private final Export export = new Export();
+
+    private final BulkImport bulkImport = new BulkImport();
+
+    private final Jdbc jdbc = new Jdbc();
+
+    private final Replicas replicas = new Replicas();
+
+    private final Shards shards = new Shards();
+
+    private final Migrations migrations = new Migrations();
+
+    @Data
+    public static class Batch {
+
+        /**
+         * Сколько строк уходит в один многострочный insert при потоковой загрузке.
+         */
+        private int size = 500;
+
+        /**
+         * Сколько ждать добора пачки в долгоживущем потоке (rsocket channel), прежде чем записать неполную.
+         */
+        private Duration window = Duration.ofMillis(10);
+
+    }
+
+    @Data
+    public static class Page {
+
+        /**
+         * Размер страницы, если клиент не передал limit.
+         */
+        private int defaultSize = 100;
+
+        /**
+         * Верхняя граница limit, чтобы одна страница не превращалась в выгрузку всей таблицы.
+         */
+        private int maxSize = 1000;
+
+        public int resolve(@Nullable Integer limit) {
+            if (limit == null || limit <= 0) {
+                return defaultSize;
+            }
+            return Math.min(limit, maxSize);
+        }
+
+    }
+
+    @Data
+    public static class Stream {
+
+        /**
+         * Сколько строк драйвер забирает из серверного курсора за один запрос.
+         */
+        private int fetchSize = 256;
+
+    }
+
+    @Data
+    public static class Cache {
+
+        private boolean enabled = true;
+
+        private long maximumSize = 100_000;
+
+        /**
+         * Сколько живет найденный студент.
+         */
+        private Duration ttl = Duration.ofMinutes(5);
+
+        /**
+         * Сколько помним, что студента с таким id нет.
+         */
+        private Duration negativeTtl = Duration.ofSeconds(5);
+
+    }
+
+    @Data
+    public static class Loader {
+
+        /**
+         * Склеивать ли одновременные поиски по id в один запрос.
+         */
+        private boolean enabled = true;
+
+        private int maxBatchSize = 100;
+
+        /**
+         * Сколько ждать остальные запросы, прежде чем отправить неполную пачку.
+         */
+        private Duration window = Duration.ofMillis(2);
+
+        /**
+         * Сколько пачек одновременно может выполняться в базе.
+         */
+        private int maxConcurrency = 8;
+
+        /**
+         * Сколько готовых пачек может ждать свободного запроса в базу; запросы из пачек сверх этого получают ошибку.
+         */
+        private int maxPendingBatches = 64;
+
+    }
+
+    @Data
+    public static class Snapshot {
+
+        /**
+         * Отвечать на чтения из копии таблицы в памяти, см. {@link StudentSnapshotService}.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Сколько необработанных уведомлений можно накопить, прежде чем снимок
+         * будет признан отставшим и загружен заново.
+         */
+        private int maxPending = 10_000;
+
+        /**
+         * На сколько экземпляр со снимком берет аренду уведомлений (продлевает ее втрое чаще): пока ни у кого
+         * нет действующей аренды, триггеры на student ничего не отправляют.
+         */
+        private Duration listenerLease = Duration.ofSeconds(30);
+
+    }
+
+    @Data
+    public static class GroupCommit {
+
+        /**
+         * Склеивать ли одновременные одиночные вставки в один многострочный insert, см. {@link StudentGroupCommitter}.
+         */
+        private boolean enabled = false;
+
+        private int maxBatchSize = 100;
+
+        /**
+         * Сколько ждать остальные вставки, прежде чем записать неполную пачку.
+         */
+        private Duration window = Duration.ofMillis(2);
+
+        /**
+         * Сколько пачек одновременно может писаться в базу.
+         */
+        private int maxConcurrency = 4;
+
+        /**
+         * Сколько готовых пачек может ждать записи; вставки из пачек сверх этого получают ошибку.
+         */
+        private int maxPendingBatches = 64;
+
+    }
+
+    @Data
+    public static class Changes {
+
+        /**
+         * Сколько последних событий хранится для повтора по {@code Last-Event-ID}.
+         */
+        private int replaySize = 10_000;
+
+        /**
+         * Сколько событий может ждать отправки одному подписчику, прежде чем он получит resync.
+         */
+        private int maxPending = 1_000;
+
+        /**
+         * Период SSE-комментария, который не дает прокси закрыть молчащее соединение.
+         */
+        private Duration heartbeat = Duration.ofSeconds(15);
+
+    }
+
+    @Data
+    public static class Export {
+
+        /**
+         * Сколько строк кодируется и сжимается за раз; столько же уходит одним чанком ответа.
+         */
+        private int chunkRows = 1000;
+
+        /**
+         * Уровень gzip от 1 (быстрее) до 9 (меньше); выгрузка обычно упирается в процессор, а не в сеть.
+         */
+        private int compressionLevel = 1;
+
+    }
+
+    @Data
+    public static class BulkImport {
+
+        /**
+         * CSV или NDJSON для загрузки; если задан, приложение запускается как команда импорта, см. {@link StudentImportCommand}.
+         */
+        @Nullable
+        private Path file;
+
+        /**
+         * Формат файла; по умолчанию определяется по расширению (.csv, иначе NDJSON).
+         */
+        @Nullable
+        private ExportFormat format;
+
+        /**
+         * Размер куска файла, который отображается в память и разбирается независимо; не больше 1GB.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Строк в одном insert.
+         */
+        private int batchSize = 5000;
+
+        /**
+         * Сколько кусков грузится одновременно, то есть сколько соединений занимает загрузка.
+         */
+        private int parallelism = 4;
+
+        /**
+         * Сохранять id из файла (восстановление из выгрузки); иначе id выдает последовательность.
+         */
+        private boolean keepIds = false;
+
+        /**
+         * Файл с позициями загрузки; по умолчанию рядом с загружаемым, с суффиксом {@code .checkpoint}.
+         */
+        @Nullable
+        private Path checkpoint;
+
+        private Duration progressInterval = Duration.ofSeconds(5);
+
+    }
+
+    @Data
+    public static class Jdbc {
+
+        /**
+         * Ходить в базу блокирующим JDBC вместо R2DBC, см. {@link com.example.reactive.core.repository.RepositoryWithJdbc}.
+         */
+        private boolean enabled = false;
+
+        /**
+         * По умолчанию url, пользователь и пароль берутся из {@code spring.r2dbc.*}.
+         */
+        @Nullable
+        private String url;
+
+        @Nullable
+        private String username;
+
+        @Nullable
+        private String password;
+
+        /**
+         * Соединений в пуле; без виртуальных потоков столько же и потоков, на которых идут запросы.
+         */
+        private int poolSize = 20;
+
+        /**
+         * Сколько ждать свободного соединения.
+         */
+        private Duration connectionTimeout = Duration.ofSeconds(5);
+
+    }
+
+    @Data
+    public static class Replicas {
+
+        /**
+         * r2dbc url реплик для чтений, см. {@link ReadWriteRoutingConnectionFactory}; пусто - все идет на primary.
+         * Пул у каждой реплики настроен так же, как {@code spring.r2dbc.pool.*}.
+         */
+        private List<String> urls = new ArrayList<>();
+
+        /**
+         * По умолчанию как у primary, {@code spring.r2dbc.*}.
+         */
+        @Nullable
+        private String username;
+
+        @Nullable
+        private String password;
+
+        private Duration healthCheckInterval = Duration.ofSeconds(5);
+
+        private Duration healthCheckTimeout = Duration.ofSeconds(1);
+
+        /**
+         * Сколько после записи читать с primary; 0 - выключено, и чтение сразу после записи может ее не увидеть.
+         */
+        private Duration readYourWrites = Duration.ZERO;
+
+    }
+
+    @Data
+    public static class Shards {
+
+        /**
+         * r2dbc url баз-шардов, см. {@link StudentShards}. Номер шарда - позиция в списке; ни порядок,
+         * ни число шардов на базах с данными менять нельзя, id тогда укажут не на тот шард.
+         */
+        private List<String> urls = new ArrayList<>();
+
+        /**
+         * По умолчанию как у основной базы, {@code spring.r2dbc.*}.
+         */
+        @Nullable
+        private String username;
+
+        @Nullable
+        private String password;
+
+        /**
+         * В запросах ко всем шардам: сколько ждать весь ответ ограниченного запроса (страницы, поиска),
+         * а в потоковых - очередную строку от шарда, у которого ее уже запросили.
+         */
+        private Duration timeout = Duration.ofSeconds(2);
+
+    }
+
+    @Data
+    public static class Migrations {
+
+        private MigrationMode mode = MigrationMode.ALWAYS;
+
+    }
+
+    @Data
+    public static class Limiter {
+
+        /**
+         * Ограничивать ли одновременные запросы к {@code /students}, см. {@link ConcurrencyLimitFilter}.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Пределы для GET и HEAD.
+         */
+        private final Limit read = new Limit(100, 10, 1000);
+
+        /**
+         * Пределы для изменяющих запросов; они дороже для базы, поэтому считаются отдельно.
+         */
+        private final Limit write = new Limit(20, 2, 200);
+
+        /**
+         * Во сколько раз задержка может превысить обычную, прежде чем предел начнет снижаться.
+         */
+        private double tolerance = 1.5;
+
+        /**
+         * Значение заголовка Retry-After в отказе.
+         */
+        private Duration retryAfter = Duration.ofSeconds(1);
+
+        @Data
+        @AllArgsConstructor
+        @NoArgsConstructor
+        public static class Limit {
+
+            private int initialLimit;
+
+            private int minLimit;
+
+            private int maxLimit;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.Student;
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Те же операции, что в {@link StudentController}, по RSocket ({@code spring.rsocket.server.port}).
+ * <p>
+ * Все запросы идут по одному мультиплексированному соединению. Потоковые маршруты отдают столько,
+ * сколько клиент запросил через {@code request(n)}: спрос доходит до курсора в базе
+ * ({@code student.stream.fetch-size}), поэтому медленный клиент не заставляет сервер буферизовать выборку.
+ */
+@Controller
+@RequiredArgsConstructor
+public class StudentRSocketController {
+
+    private final StudentService studentService;
+    private final StudentProperties properties;
+
+    /**
+     * request-response.
+     */
+    @MessageMapping("students.get")
+    public Mono<Student> getStudent(Long id) {
+        return studentService.findStudentById(id);
+    }
+
+    /**
+     * request-stream; без имени отдает всех студентов по id.
+     */
+    @MessageMapping("students.list")
+    public Flux<Student> listStudents(@Payload(required = false) @Nullable String name) {
+        return studentService.streamStudents(name);
+    }
+
+    /**
+     * request-stream.
+     */
+    @MessageMapping("students.search")
+    public Flux<Student> searchStudents(SearchRequest request) {
+        return studentService.searchStudents(request.getQuery(), request.getMode(),
+                properties.getPage().resolve(request.getLimit()));
+    }
+
+    /**
+     * request-channel: студенты без id создаются, с id - обновляются; в ответ идут сохраненные записи.
+     */
+    @MessageMapping("students.upsert")
+    public Flux<Student> upsertStudents(Flux<Student> students) {
+        return studentService.upsertStudents(students);
+    }
+
+}
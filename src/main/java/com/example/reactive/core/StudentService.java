@@ -1,46 +1,186 @@
 package com.example.reactive.core;
 
+import com.example.reactive.core.repository.SearchMode;
 import com.example.reactive.core.repository.Student;
-import com.example.reactive.core.repository.StudentRepository;
+import com.example.reactive.core.repository.StudentStore;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Stream;
+import java.util.List;
 
+/**
+ * Кэш, поток изменений и метрики поверх {@link StudentStore}. Где лежат студенты (одна база через R2DBC
+ * или JDBC, шарды, снимок в памяти), решает {@link StudentStoreConfig}, сервис об этом не знает.
+ */
 @Service
 @RequiredArgsConstructor
 public class StudentService {
 
-    private final StudentRepository studentRepository;
+    private final StudentStore store;
+    private final StudentProperties properties;
+    private final StudentCache studentCache;
+    private final StudentChangeStream studentChangeStream;
+    private final PipelineMetrics metrics;
 
     public Mono<Student> findStudentById(Long id) {
-        return studentRepository.findById(id);
+        return metrics.service("findStudentById", studentCache.get(id,
+                key -> metrics.repository("findById", store.findById(key))));
+    }
+
+    /**
+     * Порядок ответа совпадает с порядком id, отсутствующие id пропускаются.
+     * Каждый id идет через кэш, а промахи склеиваются загрузчиком в общие запросы.
+     */
+    public Flux<Student> findStudentsByIds(List<Long> ids) {
+        return metrics.service("findStudentsByIds", Flux.fromIterable(ids)
+                .flatMapSequential(this::findStudentById));
     }
 
     public Flux<Student> findStudentsByName(@Nullable String name) {
-        return name != null ? studentRepository.findByName(name) : studentRepository.findAll();
+        int fetchSize = properties.getStream().getFetchSize();
+        return name != null
+                ? metrics.repository("findByName", store.findByName(name, fetchSize))
+                : metrics.repository("findAll", store.findAll(fetchSize));
+    }
+
+    /**
+     * Потоковое чтение без пагинации: строки отдаются по мере поступления из базы,
+     * память на соединение ограничена размером одной порции курсора.
+     */
+    public Flux<Student> streamStudents(@Nullable String name) {
+        int fetchSize = properties.getStream().getFetchSize();
+        return name != null
+                ? metrics.repository("streamByName", store.findByName(name, fetchSize))
+                : metrics.repository("streamAll", store.findAll(fetchSize));
+    }
+
+    public Flux<Student> searchStudents(String query, SearchMode mode, int limit) {
+        return metrics.repository("search", store.search(query, mode, limit));
+    }
+
+    public Flux<Student> findStudentsPage(@Nullable String name, long after, int limit) {
+        return name != null
+                ? metrics.repository("findPageByName", store.findPageByName(name, after, limit))
+                : metrics.repository("findPage", store.findPage(after, limit));
     }
 
     public Mono<Student> addNewStudent(Student student) {
-        return studentRepository.save(student);
+        boolean isNew = student.getId() == null;
+        return metrics.repository("save", store.save(student))
+                .doOnNext(studentCache::put)
+                .doOnNext(isNew ? studentChangeStream::created : studentChangeStream::updated);
+    }
+
+    /**
+     * Режет входящий поток на пачки и пишет каждую одним insert'ом.
+     * concatMap с prefetch = 1 держит в памяти не больше одной пачки впереди записи,
+     * поэтому тело запроса читается ровно с той скоростью, с которой пишет база.
+     */
+    public Flux<Student> addNewStudents(Flux<Student> students) {
+        return metrics.service("addNewStudents", students
+                .buffer(properties.getBatch().getSize())
+                .concatMap(batch -> metrics.repository("insertAll", store.insertAll(batch)), 1)
+                // не прогреваем кэш массовой загрузкой, только сбрасываем возможные негативные записи
+                .doOnNext(s -> studentCache.invalidate(s.getId()))
+                .doOnNext(studentChangeStream::created));
+    }
+
+    /**
+     * Запись без id вставляется, с id - обновляет имя существующей строки (несуществующие id пропускаются).
+     * Поток может быть долгим и неравномерным, поэтому пачка пишется, когда набралось
+     * {@code student.batch.size} строк или прошло {@code student.batch.window}. Окна берутся
+     * с честным backpressure, так что источник не читается быстрее, чем идет запись в базу.
+     * Внутри пачки сначала идут вставленные, потом обновленные.
+     */
+    public Flux<Student> upsertStudents(Flux<Student> students) {
+        StudentProperties.Batch batch = properties.getBatch();
+        return metrics.service("upsertStudents", students
+                .windowTimeout(batch.getSize(), batch.getWindow(), true)
+                .concatMap(window -> window.collectList().flatMapMany(this::upsertBatch), 1));
+    }
+
+    private Flux<Student> upsertBatch(List<Student> batch) {
+        List<Student> inserts = batch.stream().filter(s -> s.getId() == null).toList();
+        List<Student> updates = batch.stream().filter(s -> s.getId() != null).toList();
+        return Flux.concat(
+                metrics.repository("insertAll", store.insertAll(inserts))
+                        .doOnNext(s -> studentCache.invalidate(s.getId()))
+                        .doOnNext(studentChangeStream::created),
+                metrics.repository("updateAll", store.updateAll(updates))
+                        .doOnNext(studentCache::put)
+                        .doOnNext(studentChangeStream::updated));
     }
 
     public Mono<Student> updateStudent(Long id, Student student) {
-        return studentRepository.findById(id)
-                .flatMap(s -> {
-                    student.setId(s.getId());
-                    return studentRepository.save(student);
-                });
+        return updateStudent(id, student, null);
+    }
+
+    /**
+     * Оптимистичная блокировка: с {@code expectedVersions} имя меняется, только если версия строки одна из них,
+     * иначе {@link OptimisticLockingFailureException}. Пустой Mono - строки нет.
+     */
+    public Mono<Student> updateStudent(Long id, Student student, @Nullable List<Long> expectedVersions) {
+        Mono<Student> updated;
+        if (expectedVersions == null) {
+            updated = metrics.repository("updateName", store.updateName(id, student.getName()));
+        } else {
+            Long[] versions = expectedVersions.toArray(Long[]::new);
+            updated = metrics.repository("updateNameIfVersion", store.updateNameIfVersion(id, student.getName(), versions))
+                    .switchIfEmpty(versionConflictIfExists(id));
+        }
+        return updated
+                .doOnNext(studentCache::put)
+                .doOnNext(studentChangeStream::updated);
+    }
+
+    public Mono<Long> deleteStudent(Long id) {
+        return deleteStudent(id, null);
+    }
+
+    /**
+     * @param expectedVersions как в {@link #updateStudent(Long, Student, List)}
+     * @return id удаленного студента или пустой Mono, если его не было
+     */
+    public Mono<Long> deleteStudent(Long id, @Nullable List<Long> expectedVersions) {
+        Mono<Long> deleted;
+        if (expectedVersions == null) {
+            deleted = metrics.repository("deleteReturningId", store.deleteReturningId(id));
+        } else {
+            Long[] versions = expectedVersions.toArray(Long[]::new);
+            deleted = metrics.repository("deleteIfVersion", store.deleteIfVersion(id, versions))
+                    .switchIfEmpty(versionConflictIfExists(id));
+        }
+        return deleted
+                .doOnSuccess(result -> studentCache.invalidate(id))
+                .doOnNext(studentChangeStream::deleted);
+    }
+
+    /**
+     * Версия всей таблицы для ETag списков: меняется с каждым изменением студентов.
+     * Пусто, когда списки отдаются из снимка: он отстает от базы, и версия опережала бы содержимое.
+     */
+    public Mono<Long> tableVersion() {
+        return metrics.repository("findChangeCounter", store.findChangeCounter());
+    }
+
+    /**
+     * Условное изменение не прошло: если строка есть, значит, у нее другая версия.
+     */
+    private <T> Mono<T> versionConflictIfExists(Long id) {
+        return store.findCurrentById(id)
+                .flatMap(current -> Mono.error(new OptimisticLockingFailureException(
+                        "Student " + id + " has version " + current.getVersion())));
     }
 
-    public Mono<Void> deleteStudent(Student student) {
-        return studentRepository.delete(student);
+    /**
+     * Изменения, сделанные через этот сервис; см. {@link StudentChangeStream}.
+     */
+    public Flux<StudentChange> changes(@Nullable StudentChange.EventId lastEventId) {
+        return studentChangeStream.subscribe(lastEventId);
     }
 
 }
@@ -0,0 +1,95 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.RepositoryWithDatabaseClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.r2dbc.pool.ConnectionPool;
+import liquibase.integration.spring.SpringLiquibase;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.metrics.r2dbc.ConnectionPoolMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseProperties;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Шардированное хранение, {@code student.shards.urls}, см. {@link StudentShards}.
+ * <p>
+ * На старте каждый шард прогоняется через тот же changelog Liquibase, что и основная база
+ * (если Liquibase включен, с учетом {@code student.migrations.mode}), после чего его последовательность id переводится на шаг в число шардов.
+ * Основная база {@code spring.r2dbc.*} студентов тогда не хранит, но может сама быть одним из шардов.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "student.shards", name = "urls")
+public class StudentShardConfig {
+
+    @Bean(destroyMethod = "close")
+    public StudentShards studentShards(StudentProperties properties, R2dbcProperties r2dbcProperties,
+                                       ObjectProvider<LiquibaseProperties> liquibaseProperties,
+                                       ResourceLoader resourceLoader, MeterRegistry meterRegistry) {
+        checkCompatible(properties);
+        StudentProperties.Shards config = properties.getShards();
+        String username = config.getUsername() != null ? config.getUsername() : r2dbcProperties.getUsername();
+        String password = config.getUsername() != null ? config.getPassword() : r2dbcProperties.getPassword();
+        LiquibaseProperties liquibase = liquibaseProperties.getIfAvailable();
+
+        List<ConnectionPool> pools = new ArrayList<>();
+        List<RepositoryWithDatabaseClient> repositories = new ArrayList<>();
+        for (String url : config.getUrls()) {
+            if (liquibase != null && liquibase.isEnabled()) {
+                migrate(url, username, password, liquibase.getChangeLog(), resourceLoader, properties.getMigrations().getMode());
+            }
+            ConnectionPool pool = ConnectionPoolConfig.pool(url, username, password, r2dbcProperties);
+            new ConnectionPoolMetrics(pool, "shard-" + pools.size(), Tags.empty()).bindTo(meterRegistry);
+            pools.add(pool);
+            repositories.add(new RepositoryWithDatabaseClient(pool));
+        }
+        StudentShards shards = new StudentShards(repositories, config.getTimeout(),
+                () -> pools.forEach(ConnectionPool::dispose));
+        shards.alignIdSequences().block();
+        log.info("Students are sharded across {} databases", shards.count());
+        return shards;
+    }
+
+    /**
+     * Снимок, реплики и JDBC-режим знают только одну базу; group commit и загрузчик по id
+     * при шардах просто не используются.
+     */
+    private static void checkCompatible(StudentProperties properties) {
+        if (properties.getSnapshot().isEnabled()) {
+            throw new IllegalStateException("student.shards cannot be combined with student.snapshot.enabled");
+        }
+        if (properties.getJdbc().isEnabled()) {
+            throw new IllegalStateException("student.shards cannot be combined with student.jdbc.enabled");
+        }
+        if (!properties.getReplicas().getUrls().isEmpty()) {
+            throw new IllegalStateException("student.shards cannot be combined with student.replicas.urls");
+        }
+    }
+
+    /**
+     * По {@code student.migrations.mode}, но всегда до старта: без схемы шарду не настроить последовательность id.
+     */
+    private static void migrate(String url, @Nullable String username, @Nullable String password,
+                                String changeLog, ResourceLoader resourceLoader, MigrationMode mode) {
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(new DriverManagerDataSource(StudentJdbcConfig.toJdbcUrl(url), username, password));
+        liquibase.setChangeLog(changeLog);
+        liquibase.setResourceLoader(resourceLoader);
+        try {
+            SchemaMigrations.run(liquibase, mode);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to migrate student shard " + url, e);
+        }
+    }
+
+}
@@ -0,0 +1,296 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.RepositoryWithDatabaseClient;
+import com.example.reactive.core.repository.SearchMode;
+import com.example.reactive.core.repository.Student;
+import com.example.reactive.core.repository.StudentStore;
+import org.reactivestreams.Publisher;
+import org.springframework.dao.QueryTimeoutException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.core.publisher.Sinks;
+import reactor.util.function.Tuple2;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Студенты, разложенные по нескольким базам по {@code id % число шардов}, {@code student.shards.urls}.
+ * <p>
+ * Последовательность id в каждом шарде шагает через число шардов и выдает только id этого шарда,
+ * поэтому новая строка может лечь в любой шард (они чередуются по кругу), а чтение, изменение
+ * и удаление по id идут ровно в один.
+ * <p>
+ * Запросы без id уходят во все шарды параллельно. Упорядоченные ответы сливаются в один поток
+ * с тем же порядком: из каждого шарда берется столько строк, сколько забирает подписчик, и курсоры
+ * шардов двигаются со скоростью клиента. Ответ без одного шарда выглядел бы как полный, поэтому медленный шард
+ * обрывает весь запрос с {@link QueryTimeoutException}: ограниченный запрос (страница, поиск, счетчик) должен
+ * уложиться в {@code student.shards.timeout} целиком, а в потоке столько можно ждать очередную строку от шарда,
+ * у которого ее уже запросили. Пока подписчик сам не забирает строки, шарды не торопят.
+ * <p>
+ * Собирается в {@code StudentShardConfig}.
+ */
+public class StudentShards implements StudentStore, AutoCloseable {
+
+    private static final Comparator<Student> BY_ID = Comparator.comparing(Student::getId);
+
+    private final List<RepositoryWithDatabaseClient> shards;
+    private final Duration timeout;
+    private final AutoCloseable resources;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param resources закрывается вместе с шардами: пулы соединений
+     */
+    public StudentShards(List<RepositoryWithDatabaseClient> shards, Duration timeout, AutoCloseable resources) {
+        this.shards = List.copyOf(shards);
+        this.timeout = timeout;
+        this.resources = resources;
+    }
+
+    public int count() {
+        return shards.size();
+    }
+
+    public int shardOf(long id) {
+        return (int) Math.floorMod(id, (long) shards.size());
+    }
+
+    /**
+     * Шард, в котором лежит (или лежал бы) студент с этим id.
+     */
+    public RepositoryWithDatabaseClient of(long id) {
+        return shards.get(shardOf(id));
+    }
+
+    /**
+     * Шард для новых строк, по кругу.
+     */
+    public RepositoryWithDatabaseClient next() {
+        return shards.get(Math.floorMod(next.getAndIncrement(), shards.size()));
+    }
+
+    /**
+     * Раскладывает студентов с id по шардам и выполняет запрос в каждом шарде со своей частью, параллельно.
+     * Ответ идет шардами в порядке готовности, а не в порядке {@code students}.
+     */
+    public <T> Flux<T> forEachShard(List<Student> students,
+                                    BiFunction<RepositoryWithDatabaseClient, List<Student>, Publisher<T>> query) {
+        Map<Integer, List<Student>> byShard = students.stream()
+                .collect(Collectors.groupingBy(student -> shardOf(student.getId())));
+        return Flux.fromIterable(byShard.entrySet())
+                .flatMap(part -> query.apply(shards.get(part.getKey()), part.getValue()));
+    }
+
+    /**
+     * Ограниченный запрос во все шарды, ответы в порядке прихода; весь ответ - за {@code timeout}.
+     */
+    public <T> Flux<T> all(Function<RepositoryWithDatabaseClient, Publisher<T>> query) {
+        return within(Flux.merge(scatter(query, Flux::from)));
+    }
+
+    /**
+     * Потоковый запрос во все шарды, каждый из которых отдает строки в порядке {@code order}; ответы сливаются
+     * в один поток с тем же порядком. Очередная строка уходит подписчику, когда от каждого шарда
+     * есть следующая строка или конец, так что самый медленный шард задает темп.
+     */
+    public <T> Flux<T> merge(Comparator<? super T> order, Function<RepositoryWithDatabaseClient, Publisher<T>> query) {
+        return Flux.mergeComparing(order, scatter(query, this::idleTimeout));
+    }
+
+    /**
+     * Первые {@code limit} строк слияния, как в {@link #merge}, но весь ответ - за {@code timeout}.
+     */
+    public <T> Flux<T> mergeFirst(Comparator<? super T> order, int limit, Function<RepositoryWithDatabaseClient, Publisher<T>> query) {
+        return within(Flux.mergeComparing(order, scatter(query, Flux::from)).take(limit));
+    }
+
+    @Override
+    public Mono<Student> findById(Long id) {
+        return of(id).findById(id);
+    }
+
+    @Override
+    public Flux<Student> findAll(int fetchSize) {
+        return merge(BY_ID, shard -> shard.findAll(fetchSize));
+    }
+
+    @Override
+    public Flux<Student> findByName(String name, int fetchSize) {
+        return merge(BY_ID, shard -> shard.findByName(name, fetchSize));
+    }
+
+    @Override
+    public Flux<Student> findPage(long after, int limit) {
+        return mergeFirst(BY_ID, limit, shard -> shard.findPage(after, limit));
+    }
+
+    @Override
+    public Flux<Student> findPageByName(String name, long after, int limit) {
+        return mergeFirst(BY_ID, limit, shard -> shard.findPageByName(name, after, limit));
+    }
+
+    /**
+     * Каждый шард отдает свои {@code limit} лучших в порядке режима поиска, из слитого потока берутся первые {@code limit}.
+     * Префиксный поиск шарды сортируют по {@code lower(name) collate "C"}, то есть по байтам UTF-8, и слияние
+     * сравнивает имена так же - по кодовым точкам, а не по UTF-16 {@link String#compareTo}.
+     */
+    @Override
+    public Flux<Student> search(String query, SearchMode mode, int limit) {
+        return switch (mode) {
+            case EXACT -> mergeFirst(BY_ID, limit, shard -> shard.search(query, mode, limit));
+            case PREFIX -> mergeFirst(Comparator.comparing((Student s) -> s.getName().toLowerCase(Locale.ROOT), StudentShards::compareCodePoints)
+                            .thenComparing(BY_ID), limit,
+                    shard -> shard.search(query, mode, limit));
+            case FUZZY -> mergeFirst(Comparator.comparing((Tuple2<Student, Float> found) -> found.getT2()).reversed()
+                            .thenComparing(Tuple2::getT1, BY_ID), limit,
+                    shard -> shard.searchWithSimilarity(query, limit))
+                    .map(Tuple2::getT1);
+        };
+    }
+
+    /**
+     * Новый студент - в {@link #next()}, существующий - в свой шард.
+     */
+    @Override
+    public Mono<Student> save(Student student) {
+        return (student.getId() == null ? next() : of(student.getId())).save(student);
+    }
+
+    /**
+     * Вся пачка ложится в один шард, следующая - в следующий.
+     */
+    @Override
+    public Flux<Student> insertAll(List<Student> students) {
+        return next().insertAll(students);
+    }
+
+    @Override
+    public Flux<Student> updateAll(List<Student> students) {
+        return forEachShard(students, RepositoryWithDatabaseClient::updateAll);
+    }
+
+    @Override
+    public Mono<Student> updateName(long id, String name) {
+        return of(id).updateName(id, name);
+    }
+
+    @Override
+    public Mono<Student> updateNameIfVersion(long id, String name, Long[] versions) {
+        return of(id).updateNameIfVersion(id, name, versions);
+    }
+
+    @Override
+    public Mono<Long> deleteReturningId(long id) {
+        return of(id).deleteReturningId(id);
+    }
+
+    @Override
+    public Mono<Long> deleteIfVersion(long id, Long[] versions) {
+        return of(id).deleteIfVersion(id, versions);
+    }
+
+    /**
+     * Сумма растущих счетчиков шардов растет с каждым изменением в любом из них.
+     */
+    @Override
+    public Mono<Long> findChangeCounter() {
+        return all(RepositoryWithDatabaseClient::findChangeCounter).reduce(0L, Long::sum);
+    }
+
+    private static int compareCodePoints(String a, String b) {
+        return Arrays.compare(a.codePoints().toArray(), b.codePoints().toArray());
+    }
+
+    /**
+     * {@link RepositoryWithDatabaseClient#alignIdSequence} в каждом шарде.
+     */
+    public Mono<Void> alignIdSequences() {
+        return Flux.range(0, shards.size())
+                .concatMap(shard -> shards.get(shard).alignIdSequence(shard, shards.size()))
+                .then();
+    }
+
+    @Override
+    public void close() throws Exception {
+        resources.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Publisher<T>[] scatter(Function<RepositoryWithDatabaseClient, Publisher<T>> query,
+                                       Function<Publisher<T>, Flux<T>> perShard) {
+        return IntStream.range(0, shards.size())
+                .mapToObj(shard -> perShard.apply(query.apply(shards.get(shard)))
+                        .onErrorMap(TimeoutException.class, e -> new QueryTimeoutException(
+                                "Student shard " + shard + " did not answer within " + timeout, e)))
+                .toArray(Publisher[]::new);
+    }
+
+    /**
+     * Весь запрос - не дольше {@code timeout}: после каждой строки таймер взводится на оставшееся время.
+     */
+    private <T> Flux<T> within(Flux<T> query) {
+        return Flux.defer(() -> {
+                    long deadline = System.nanoTime() + timeout.toNanos();
+                    Mono<Long> rest = Mono.defer(() -> Mono.delay(Duration.ofNanos(Math.max(0, deadline - System.nanoTime()))));
+                    return query.timeout(rest, row -> rest);
+                })
+                .onErrorMap(TimeoutException.class, e -> new QueryTimeoutException(
+                        "Student shards did not answer within " + timeout, e));
+    }
+
+    /**
+     * Очередная строка - не дольше {@code timeout}, но считается время, только пока ее запросили и ждут:
+     * если подписчик не забирает строки, поток может стоять сколько угодно.
+     */
+    private <T> Flux<T> idleTimeout(Publisher<T> rows) {
+        return Flux.defer(() -> {
+            Demand demand = new Demand();
+            Mono<Long> timer = Mono.defer(() -> demand.awaited().then(Mono.delay(timeout)));
+            return Flux.from(rows)
+                    .doOnNext(row -> demand.received())
+                    .timeout(timer, row -> timer)
+                    .doOnRequest(demand::requested);
+        });
+    }
+
+    /**
+     * Строки, запрошенные у шарда, но еще не полученные.
+     */
+    private static final class Demand {
+
+        private long pending;
+        private Sinks.Empty<Void> requested = Sinks.empty();
+
+        synchronized void requested(long n) {
+            pending = Operators.addCap(pending, n);
+            requested.tryEmitEmpty();
+        }
+
+        synchronized void received() {
+            if (pending > 0 && pending != Long.MAX_VALUE && --pending == 0) {
+                requested = Sinks.empty();
+            }
+        }
+
+        /**
+         * Завершается, как только есть запрошенные и не полученные строки.
+         */
+        synchronized Mono<Void> awaited() {
+            return requested.asMono();
+        }
+
+    }
+
+}
@@ -0,0 +1,209 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.Student;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Компактная копия таблицы student в памяти.
+ * <p>
+ * Строки лежат в двух параллельных массивах, отсортированных по id: {@code long[]} без
+ * упаковки в {@link Long} и массив имен. Поиск по id - бинарный поиск, страница - проход
+ * по массиву от позиции {@code after}. Новые id от bigserial почти всегда больше последнего,
+ * поэтому вставка обычно сводится к дописыванию в конец. Удаленные строки помечаются
+ * пустым именем и вычищаются, когда их становится больше половины.
+ * <p>
+ * Индекс по имени хранит для каждого имени отсортированный {@code long[]} id.
+ */
+class StudentSnapshot {
+
+    private static final long[] NO_IDS = new long[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, long[]> idsByName = new HashMap<>();
+    private long[] ids = new long[1024];
+    private String[] names = new String[1024];
+    private int size;
+    private int live;
+
+    @Nullable
+    Student find(long id) {
+        lock.readLock().lock();
+        try {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            return i >= 0 && names[i] != null ? new Student(id, names[i]) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Student> page(long after, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Student> page = new ArrayList<>(Math.min(limit, live));
+            for (int i = firstAfter(ids, size, after); i < size && page.size() < limit; i++) {
+                if (names[i] != null) {
+                    page.add(new Student(ids[i], names[i]));
+                }
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Student> pageByName(String name, long after, int limit) {
+        lock.readLock().lock();
+        try {
+            long[] named = idsByName.getOrDefault(name, NO_IDS);
+            int from = firstAfter(named, named.length, after);
+            int to = (int) Math.min(named.length, (long) from + limit);
+            List<Student> page = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                page.add(new Student(named[i], name));
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void upsert(long id, String name) {
+        lock.writeLock().lock();
+        try {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i >= 0) {
+                String previous = names[i];
+                if (previous == null) {
+                    live++;
+                } else {
+                    removeFromIndex(previous, id);
+                }
+                names[i] = name;
+            } else {
+                insertAt(-(i + 1), id, name);
+            }
+            addToIndex(name, id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void delete(long id) {
+        lock.writeLock().lock();
+        try {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i < 0 || names[i] == null) {
+                return;
+            }
+            removeFromIndex(names[i], id);
+            names[i] = null;
+            live--;
+            if (size > 1024 && live < size / 2) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Приводит строки с {@code from <= id <= to} к {@code students}: чего там нет, удаляется.
+     */
+    void replaceRange(long from, long to, List<Student> students) {
+        lock.writeLock().lock();
+        try {
+            Set<Long> present = new HashSet<>();
+            for (Student student : students) {
+                present.add(student.getId());
+                upsert(student.getId(), student.getName());
+            }
+            List<Long> missing = new ArrayList<>();
+            for (int i = firstAfter(ids, size, from - 1); i < size && ids[i] <= to; i++) {
+                if (names[i] != null && !present.contains(ids[i])) {
+                    missing.add(ids[i]);
+                }
+            }
+            missing.forEach(this::delete);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        return live;
+    }
+
+    private void insertAt(int at, long id, String name) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+        }
+        if (at < size) {
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            System.arraycopy(names, at, names, at + 1, size - at);
+        }
+        ids[at] = id;
+        names[at] = name;
+        size++;
+        live++;
+    }
+
+    private void compact() {
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            if (names[i] != null) {
+                ids[j] = ids[i];
+                names[j] = names[i];
+                j++;
+            }
+        }
+        Arrays.fill(names, j, size, null);
+        size = j;
+    }
+
+    private void addToIndex(String name, long id) {
+        long[] named = idsByName.getOrDefault(name, NO_IDS);
+        int i = Arrays.binarySearch(named, id);
+        if (i >= 0) {
+            return;
+        }
+        int at = -(i + 1);
+        long[] updated = new long[named.length + 1];
+        System.arraycopy(named, 0, updated, 0, at);
+        updated[at] = id;
+        System.arraycopy(named, at, updated, at + 1, named.length - at);
+        idsByName.put(name, updated);
+    }
+
+    private void removeFromIndex(String name, long id) {
+        long[] named = idsByName.get(name);
+        int i = named == null ? -1 : Arrays.binarySearch(named, id);
+        if (i < 0) {
+            return;
+        }
+        if (named.length == 1) {
+            idsByName.remove(name);
+            return;
+        }
+        long[] updated = new long[named.length - 1];
+        System.arraycopy(named, 0, updated, 0, i);
+        System.arraycopy(named, i + 1, updated, i, named.length - i - 1);
+        idsByName.put(name, updated);
+    }
+
+    private static int firstAfter(long[] sorted, int length, long after) {
+        int i = Arrays.binarySearch(sorted, 0, length, after);
+        return i >= 0 ? i + 1 : -(i + 1);
+    }
+
+}
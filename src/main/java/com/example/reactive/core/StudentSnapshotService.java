@@ -0,0 +1,179 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.RepositoryWithDatabaseClient;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.postgresql.api.Notification;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Держит {@link StudentSnapshot} в актуальном состоянии.
+ * <p>
+ * На отдельном соединении берется аренда в {@code student_notify_listener} (без нее триггеры на student
+ * ничего не отправляют, чтобы без снимка записи не платили за notify) и выполняется
+ * {@code listen student_changes}, после чего таблица
+ * целиком вычитывается в новый снимок, а дальше снимок догоняет базу по уведомлениям - по одному на оператор.
+ * Уведомления, пришедшие во время загрузки, копятся в буфере и применяются следом; они несут полное
+ * новое состояние строк (или диапазон id, который перечитывается из базы), поэтому повторное применение
+ * безопасно. Если буфер переполнился или соединение упало, снимок сбрасывается (чтения уходят в базу),
+ * и все начинается заново с полной загрузки.
+ * <p>
+ * Аренда продлевается втрое чаще {@code student.snapshot.listener-lease} и после остановки или падения
+ * экземпляра истекает сама; ни DDL, ни прав владельца таблицы не нужно.
+ * Снимок обновляется после коммита, поэтому чтение сразу после записи может его не увидеть.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "student.snapshot", name = "enabled", havingValue = "true")
+public class StudentSnapshotService implements SmartLifecycle {
+
+    static final String CHANNEL = "student_changes";
+
+    private static final String RENEW_LEASE = "insert into student_notify_listener (instance, expires_at) " +
+            "values ($1, now() + make_interval(secs => $2)) " +
+            "on conflict (instance) do update set expires_at = excluded.expires_at";
+
+    private static final String DROP_EXPIRED_LEASES = "delete from student_notify_listener where expires_at < now()";
+
+    private final R2dbcProperties r2dbcProperties;
+    private final RepositoryWithDatabaseClient repository;
+    private final StudentProperties properties;
+    private final ObjectMapper objectMapper;
+    private final String instance = UUID.randomUUID().toString();
+
+    private volatile StudentSnapshot current;
+    private volatile Disposable subscription;
+
+    /**
+     * @return готовый снимок или null, пока он загружается
+     */
+    @Nullable
+    StudentSnapshot current() {
+        return current;
+    }
+
+    @Override
+    public void start() {
+        subscription = follow()
+                .doOnError(e -> {
+                    current = null;
+                    log.warn("Student snapshot is out of sync, reloading: {}", e.toString());
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(100)).maxBackoff(Duration.ofSeconds(10)))
+                .repeat()
+                .subscribe();
+    }
+
+    @Override
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+        current = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return subscription != null && !subscription.isDisposed();
+    }
+
+    private Mono<Void> follow() {
+        // отдельное соединение мимо пула: listen привязан к сессии и держит ее все время работы
+        ConnectionFactoryBuilder builder = ConnectionFactoryBuilder.withUrl(r2dbcProperties.getUrl());
+        if (r2dbcProperties.getUsername() != null) {
+            builder.username(r2dbcProperties.getUsername());
+        }
+        if (r2dbcProperties.getPassword() != null) {
+            builder.password(r2dbcProperties.getPassword());
+        }
+        ConnectionFactory connectionFactory = builder.build();
+        return Mono.usingWhen(connectionFactory.create(), connection -> {
+            PostgresqlConnection postgres = (PostgresqlConnection) connection;
+            // подписываемся на уведомления до listen и загрузки, чтобы не потерять ни одного
+            Flux<Notification> notifications = postgres.getNotifications()
+                    .onBackpressureBuffer(properties.getSnapshot().getMaxPending(), dropped -> {
+                    }, BufferOverflowStrategy.ERROR)
+                    .publish()
+                    .autoConnect(0);
+            Duration lease = properties.getSnapshot().getListenerLease();
+            Flux<Void> renewals = Flux.interval(lease.dividedBy(3))
+                    .onBackpressureDrop()
+                    .concatMap(tick -> renewLease(postgres, lease));
+            return renewLease(postgres, lease)
+                    .thenMany(postgres.createStatement("listen " + CHANNEL).execute())
+                    .flatMap(result -> result.getRowsUpdated())
+                    .then(reload())
+                    .thenMany(Flux.merge(notifications.concatMap(this::apply), renewals))
+                    .then();
+        }, Connection::close);
+    }
+
+    private Mono<Void> renewLease(PostgresqlConnection postgres, Duration lease) {
+        return postgres.createStatement(RENEW_LEASE)
+                .bind("$1", instance)
+                .bind("$2", lease.toMillis() / 1000.0)
+                .execute()
+                .flatMap(result -> result.getRowsUpdated())
+                .thenMany(postgres.createStatement(DROP_EXPIRED_LEASES).execute())
+                .flatMap(result -> result.getRowsUpdated())
+                .then();
+    }
+
+    private Mono<Void> reload() {
+        return repository.findAll(properties.getStream().getFetchSize())
+                .collect(StudentSnapshot::new, (snapshot, student) -> snapshot.upsert(student.getId(), student.getName()))
+                .doOnNext(snapshot -> {
+                    current = snapshot;
+                    log.info("Student snapshot loaded, {} rows", snapshot.size());
+                })
+                .then();
+    }
+
+    private Mono<Void> apply(Notification notification) {
+        StudentSnapshot snapshot = current;
+        JsonNode change = readPayload(notification.getParameter());
+        if (change.has("rows")) {
+            change.get("rows").forEach(row -> snapshot.upsert(row.get("id").asLong(), row.get("name").asText()));
+            return Mono.empty();
+        }
+        if (change.has("ids")) {
+            change.get("ids").forEach(id -> snapshot.delete(id.asLong()));
+            return Mono.empty();
+        }
+        // пачка не влезла в payload уведомления, ее диапазон дочитываем из базы
+        long from = change.get("from").asLong();
+        long to = change.get("to").asLong();
+        return repository.findRange(from, to + 1, properties.getStream().getFetchSize())
+                .collectList()
+                .doOnNext(students -> snapshot.replaceRange(from, to, students))
+                .then();
+    }
+
+    private JsonNode readPayload(@Nullable String payload) {
+        try {
+            return objectMapper.readTree(payload);
+        } catch (Exception e) {
+            throw new IllegalStateException("Malformed student change notification: " + payload, e);
+        }
+    }
+
+}
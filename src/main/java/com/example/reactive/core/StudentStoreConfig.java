@@ -0,0 +1,44 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.RepositoryWithDatabaseClient;
+import com.example.reactive.core.repository.RepositoryWithJdbc;
+import com.example.reactive.core.repository.StudentRepository;
+import com.example.reactive.core.repository.StudentStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Выбор {@link StudentStore} для {@link StudentService}: шарды ({@code student.shards.urls}), иначе JDBC
+ * ({@code student.jdbc.enabled}), иначе R2DBC. Со {@code student.snapshot.enabled} поверх выбранного
+ * хранилища читает снимок.
+ * <p>
+ * Шарды и JDBC сами тоже {@link StudentStore}, поэтому выбранное хранилище помечено {@link Primary}.
+ */
+@Configuration
+public class StudentStoreConfig {
+
+    @Bean
+    @Primary
+    public StudentStore studentStore(ObjectProvider<StudentShards> studentShards,
+                                     ObjectProvider<RepositoryWithJdbc> repositoryWithJdbc,
+                                     ObjectProvider<StudentSnapshotService> studentSnapshotService,
+                                     StudentRepository studentRepository,
+                                     RepositoryWithDatabaseClient repositoryWithDatabaseClient,
+                                     StudentProperties properties,
+                                     StudentBatchLoader studentBatchLoader,
+                                     StudentGroupCommitter studentGroupCommitter) {
+        StudentStore store = studentShards.getIfAvailable();
+        if (store == null) {
+            store = repositoryWithJdbc.getIfAvailable();
+        }
+        if (store == null) {
+            store = new R2dbcStudentStore(studentRepository, repositoryWithDatabaseClient, properties,
+                    studentBatchLoader, studentGroupCommitter);
+        }
+        StudentSnapshotService snapshot = studentSnapshotService.getIfAvailable();
+        return snapshot != null ? new SnapshotStudentStore(store, snapshot) : store;
+    }
+
+}
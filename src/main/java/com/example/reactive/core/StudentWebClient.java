@@ -1,14 +1,93 @@
 package com.example.reactive.core;
 
+import com.example.reactive.core.repository.SearchMode;
 import com.example.reactive.core.repository.Student;
+import lombok.Builder;
+import lombok.Getter;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
-public class StudentWebClient {
-    WebClient client = WebClient.create("http://localhost:8080");
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Клиент REST API студентов. Если задан {@link Options#getRsocketUri()}, чтение и массовая запись
+ * идут по RSocket через одно мультиплексированное соединение, остальное - по HTTP.
+ */
+public class StudentWebClient implements AutoCloseable {
+    WebClient client;
+    private final ConnectionProvider connectionProvider;
+    private final Options options;
+    @Nullable
+    private final RSocketRequester rsocket;
+
+    public StudentWebClient() {
+        this(Options.builder().build());
+    }
+
+    public StudentWebClient(String baseUrl) {
+        this(Options.builder().baseUrl(baseUrl).build());
+    }
+
+    public StudentWebClient(Options options) {
+        this.options = options;
+        this.connectionProvider = ConnectionProvider.builder("student-web-client")
+                .maxConnections(options.getMaxConnections())
+                .pendingAcquireMaxCount(options.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(options.getPendingAcquireTimeout())
+                .maxIdleTime(options.getMaxIdleTime())
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .keepAlive(options.isKeepAlive())
+                .compress(options.isCompression())
+                .protocol(options.isHttp2()
+                        ? new HttpProtocol[]{HttpProtocol.H2C}
+                        : new HttpProtocol[]{HttpProtocol.HTTP11});
+        this.client = WebClient.builder()
+                .baseUrl(options.getBaseUrl())
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+        this.rsocket = options.getRsocketUri() != null ? rsocketRequester(URI.create(options.getRsocketUri())) : null;
+    }
+
+    private static RSocketRequester rsocketRequester(URI uri) {
+        RSocketStrategies strategies = RSocketStrategies.builder()
+                .encoders(encoders -> {
+                    encoders.add(new StudentJsonEncoder());
+                    encoders.add(new Jackson2JsonEncoder());
+                })
+                .decoders(decoders -> decoders.add(new Jackson2JsonDecoder()))
+                .build();
+        // соединение устанавливается при первом запросе и переустанавливается после разрыва
+        return RSocketRequester.builder()
+                .rsocketStrategies(strategies)
+                .dataMimeType(MediaType.APPLICATION_JSON)
+                .tcp(uri.getHost(), uri.getPort());
+    }
 
     public Mono<Student> get(long id) {
+        if (rsocket != null) {
+            return rsocket.route("students.get").data(id).retrieveMono(Student.class);
+        }
         return client
                 .get()
                 .uri("/students/" + id)
@@ -17,24 +96,110 @@ public class StudentWebClient {
                 .bodyToMono(Student.class);
     }
 
-    public Flux<Student> getAll() {
+    /**
+     * Забирает студентов пачками через {@code GET /students?ids=...}, держа в полете
+     * не больше {@code concurrency} запросов. При {@code ordered} порядок ответа совпадает
+     * с порядком id, иначе студенты отдаются по мере прихода пачек. Несуществующие id пропускаются.
+     */
+    public Flux<Student> getMany(Flux<Long> ids, int concurrency, boolean ordered) {
+        Flux<List<Long>> chunks = ids.buffer(options.getIdsPerRequest());
+        return ordered
+                ? chunks.flatMapSequential(this::getByIds, concurrency)
+                : chunks.flatMap(this::getByIds, concurrency);
+    }
+
+    private Flux<Student> getByIds(List<Long> ids) {
         return client.get()
-                .uri("/students")
+                .uri(uriBuilder -> uriBuilder.path("/students")
+                        .queryParam("ids", ids)
+                        .build())
                 .headers(headers -> headers.setBasicAuth("user", "userpwd"))
                 .retrieve()
                 .bodyToFlux(Student.class);
     }
 
+    public Flux<Student> getAll() {
+        if (rsocket != null) {
+            return rsocket.route("students.list").retrieveFlux(Student.class);
+        }
+        return allPages(uriBuilder -> uriBuilder.path("/students"));
+    }
+
     public Flux<Student> findByName(String name) {
+        if (rsocket != null) {
+            return rsocket.route("students.list").data(name).retrieveFlux(Student.class);
+        }
+        return allPages(uriBuilder -> uriBuilder.path("/students")
+                .queryParam("name", name));
+    }
+
+    public Flux<Student> search(String query, SearchMode mode) {
+        if (rsocket != null) {
+            return rsocket.route("students.search").data(new SearchRequest(query, mode, null)).retrieveFlux(Student.class);
+        }
         return client.get()
-                .uri(uriBuilder -> uriBuilder.path("/students")
-                        .queryParam("name", name)
+                .uri(uriBuilder -> uriBuilder.path("/students/search")
+                        .queryParam("q", query)
+                        .queryParam("mode", mode.name().toLowerCase(Locale.ROOT))
                         .build())
                 .headers(headers -> headers.setBasicAuth("user", "userpwd"))
                 .retrieve()
                 .bodyToFlux(Student.class);
     }
 
+    public Flux<Student> streamAll() {
+        if (rsocket != null) {
+            return rsocket.route("students.list").retrieveFlux(Student.class);
+        }
+        return client.get()
+                .uri("/students")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .headers(headers -> headers.setBasicAuth("user", "userpwd"))
+                .retrieve()
+                .bodyToFlux(Student.class);
+    }
+
+    /**
+     * Подписка на {@code GET /students/changes}; {@code lastEventId} - {@link StudentChange#eventId()}
+     * последнего обработанного изменения, чтобы получить пропущенные. Комментарии-heartbeat отфильтрованы.
+     */
+    public Flux<StudentChange> changes(@Nullable String lastEventId) {
+        return client.get()
+                .uri("/students/changes")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .headers(headers -> {
+                    headers.setBasicAuth("user", "userpwd");
+                    if (lastEventId != null) {
+                        headers.set("Last-Event-ID", lastEventId);
+                    }
+                })
+                .retrieve()
+                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<StudentChange>>() {
+                })
+                .mapNotNull(ServerSentEvent::data);
+    }
+
+    /**
+     * Проходит по страницам, пока сервер возвращает токен следующей страницы.
+     */
+    private Flux<Student> allPages(Function<UriBuilder, UriBuilder> uri) {
+        return page(uri, null)
+                .expand(page -> page.getHeaders().containsKey(StudentController.NEXT_PAGE_TOKEN)
+                        ? page(uri, page.getHeaders().getFirst(StudentController.NEXT_PAGE_TOKEN))
+                        : Mono.empty())
+                .flatMapIterable(ResponseEntity::getBody);
+    }
+
+    private Mono<ResponseEntity<List<Student>>> page(Function<UriBuilder, UriBuilder> uri, @Nullable String after) {
+        return client.get()
+                .uri(uriBuilder -> uri.apply(uriBuilder)
+                        .queryParamIfPresent("after", Optional.ofNullable(after))
+                        .build())
+                .headers(headers -> headers.setBasicAuth("user", "userpwd"))
+                .retrieve()
+                .toEntityList(Student.class);
+    }
+
     public Mono<Student> create(Student s)  {
         return client.post()
                 .uri("/students")
@@ -44,6 +209,39 @@ public class StudentWebClient {
                 .bodyToMono(Student.class);
     }
 
+    /**
+     * Стримит студентов в {@code POST /students/batch} как NDJSON и получает созданных
+     * с id обратно потоком, не дожидаясь конца загрузки.
+     */
+    public Flux<Student> createAll(Flux<Student> students) {
+        if (rsocket != null) {
+            return upsertAll(students);
+        }
+        return client.post()
+                .uri("/students/batch")
+                .headers(headers -> headers.setBasicAuth("admin", "adminpwd"))
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .body(students, Student.class)
+                .retrieve()
+                .bodyToFlux(Student.class);
+    }
+
+    /**
+     * Студенты без id создаются, с id - обновляются. По RSocket это один request-channel,
+     * по HTTP - отдельные POST и PUT, не больше {@code concurrency} одновременно.
+     */
+    public Flux<Student> upsertAll(Flux<Student> students, int concurrency) {
+        if (rsocket != null) {
+            return upsertAll(students);
+        }
+        return students.flatMap(s -> s.getId() == null ? create(s) : update(s), concurrency);
+    }
+
+    private Flux<Student> upsertAll(Flux<Student> students) {
+        return rsocket.route("students.upsert").data(students, Student.class).retrieveFlux(Student.class);
+    }
+
     public Mono<Student> update(Student student)  {
         return client
                 .put()
@@ -62,4 +260,67 @@ public class StudentWebClient {
                 .retrieve()
                 .bodyToMono(Void.class);
     }
+
+    @Override
+    public void close() {
+        connectionProvider.dispose();
+        if (rsocket != null) {
+            rsocket.dispose();
+        }
+    }
+
+    @Getter
+    @Builder
+    public static class Options {
+
+        @Builder.Default
+        private final String baseUrl = "http://localhost:8087";
+
+        /**
+         * Предел соединений к серверу; при HTTP/2 по каждому идет много запросов сразу.
+         */
+        @Builder.Default
+        private final int maxConnections = 500;
+
+        /**
+         * Сколько запросов может ждать свободное соединение, прежде чем клиент начнет отказывать.
+         */
+        @Builder.Default
+        private final int pendingAcquireMaxCount = 10_000;
+
+        @Builder.Default
+        private final Duration pendingAcquireTimeout = Duration.ofSeconds(10);
+
+        @Builder.Default
+        private final Duration maxIdleTime = Duration.ofSeconds(30);
+
+        @Builder.Default
+        private final boolean keepAlive = true;
+
+        /**
+         * HTTP/2 без TLS (h2c prior knowledge); серверу нужен {@code server.http2.enabled=true}.
+         */
+        @Builder.Default
+        private final boolean http2 = false;
+
+        /**
+         * Просить сервер сжимать ответы.
+         */
+        @Builder.Default
+        private final boolean compression = true;
+
+        /**
+         * Сколько id уходит в один запрос {@link #getMany}.
+         */
+        @Builder.Default
+        private final int idsPerRequest = 100;
+
+        /**
+         * Адрес rsocket-сервера вида {@code tcp://localhost:7000}; {@code null} - только HTTP.
+         */
+        @Nullable
+        private final String rsocketUri;
+
+    }
+
 }
@@ -0,0 +1,64 @@
+package com.example.reactive.core;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Wrapped;
+import org.springframework.beans.factory.ObjectProvider;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Меряет, сколько запрос ждет соединение из пула: от подписки на {@code create()}
+ * до выдачи соединения, включая ожидание в очереди pending.
+ * Остальные метрики пула (acquired, pending, idle) публикует Spring Boot,
+ * добираясь до пула через {@link Wrapped}.
+ */
+class TimedConnectionFactory implements ConnectionFactory, Wrapped<ConnectionFactory> {
+
+    static final String ACQUIRE_TIMER = "r2dbc.pool.acquire";
+
+    private final ConnectionFactory delegate;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private volatile Timer acquireTimer;
+
+    TimedConnectionFactory(ConnectionFactory delegate, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Mono<Connection> create() {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return Mono.<Connection>from(delegate.create())
+                    .doOnSuccess(connection -> acquireTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return delegate.getMetadata();
+    }
+
+    @Override
+    public ConnectionFactory unwrap() {
+        return delegate;
+    }
+
+    private Timer acquireTimer() {
+        Timer timer = acquireTimer;
+        if (timer == null) {
+            timer = Timer.builder(ACQUIRE_TIMER)
+                    .description("Time spent waiting for a pooled connection")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry.getObject());
+            acquireTimer = timer;
+        }
+        return timer;
+    }
+
+}
@@ -1,26 +1,321 @@
 package com.example.reactive.core.repository;
 
 import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Readable;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.TransientDataAccessResourceException;
 import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class RepositoryWithDatabaseClient {
 
+    // планы этих запросов проверяет StudentSearchPlanTest
+    static final String PREFIX_SEARCH = "select * from student where lower(name) like lower(:query) " +
+            "order by lower(name) collate \"C\", id limit :limit";
+    static final String EXACT_SEARCH = "select * from student where lower(name) = lower(:query) " +
+            "order by id limit :limit";
+    static final String FUZZY_SEARCH = "select * from student where name % :query " +
+            "order by similarity(name, :query) desc, id limit :limit";
+
     private final ConnectionFactory connectionFactory;
 
     public Flux<Student> findAll() {
         DatabaseClient client = DatabaseClient.create(connectionFactory);
         return client.sql("select * from student")
-                .map(row -> {
-                    var id = row.get("id", Long.class);
-                    var name = row.get("name", String.class);
-                    return new Student(id, name);
-                })
+                .map(RepositoryWithDatabaseClient::toStudent)
+                .all();
+    }
+
+    public Flux<Student> findAllById(Long[] ids) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("select * from student where id = any(cast(:ids as bigint[]))")
+                .bind("ids", ids)
+                .map(RepositoryWithDatabaseClient::toStudent)
+                .all();
+    }
+
+    public Flux<Student> search(String query, SearchMode mode, int limit) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        String sql = switch (mode) {
+            case PREFIX -> PREFIX_SEARCH;
+            case EXACT -> EXACT_SEARCH;
+            case FUZZY -> FUZZY_SEARCH;
+        };
+        return client.sql(sql)
+                .bind("query", mode == SearchMode.PREFIX ? escapeLike(query) + "%" : query)
+                .bind("limit", limit)
+                .map(RepositoryWithDatabaseClient::toStudent)
+                .all();
+    }
+
+    /**
+     * Как {@link #search} в режиме {@link SearchMode#FUZZY}, но вместе с оценкой похожести:
+     * по ней сливаются ответы нескольких баз.
+     */
+    public Flux<Tuple2<Student, Float>> searchWithSimilarity(String query, int limit) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("select *, similarity(name, :query) as similarity from student where name % :query " +
+                        "order by similarity desc, id limit :limit")
+                .bind("query", query)
+                .bind("limit", limit)
+                .map(row -> Tuples.of(toStudent(row), row.get("similarity", Float.class)))
+                .all();
+    }
+
+    /**
+     * Keyset-страница, как {@link StudentRepository#findPage}.
+     */
+    public Flux<Student> findPage(long after, int limit) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("select * from student where id > :after order by id limit :limit")
+                .bind("after", after)
+                .bind("limit", limit)
+                .map(RepositoryWithDatabaseClient::toStudent)
+                .all();
+    }
+
+    public Flux<Student> findPageByName(String name, long after, int limit) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("select * from student where name = :name and id > :after order by id limit :limit")
+                .bind("name", name)
+                .bind("after", after)
+                .bind("limit", limit)
+                .map(RepositoryWithDatabaseClient::toStudent)
                 .all();
     }
 
+    /**
+     * Читает таблицу через портал: драйвер запрашивает у Postgres по {@code fetchSize} строк
+     * и идет за следующей порцией только после того, как подписчик разобрал предыдущую.
+     */
+    public Flux<Student> findAll(int fetchSize) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("select * from student order by id")
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .map(RepositoryWithDatabaseClient::toStudent)
+                .all();
+    }
+
+    /**
+     * Как {@link #findAll(int)}, но только {@code from <= id < to}.
+     */
+    public Flux<Student> findRange(long from, long to, int fetchSize) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("select * from student where id >= :from and id < :to order by id")
+                .bind("from", from)
+                .bind("to", to)
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .map(RepositoryWithDatabaseClient::toStudent)
+                .all();
+    }
+
+    /**
+     * @return минимальный и максимальный id или пустой Mono, если таблица пуста
+     */
+    public Mono<long[]> findIdBounds() {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("select min(id) as min_id, max(id) as max_id from student having count(*) > 0")
+                .map(row -> new long[]{row.get("min_id", Long.class), row.get("max_id", Long.class)})
+                .one();
+    }
+
+    public Flux<Student> findByName(String name, int fetchSize) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("select * from student where name = :name order by id")
+                .bind("name", name)
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .map(RepositoryWithDatabaseClient::toStudent)
+                .all();
+    }
+
+    public Mono<Student> findById(Long id) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("select * from student where id = :id")
+                .bind("id", id)
+                .map(RepositoryWithDatabaseClient::toStudent)
+                .one();
+    }
+
+    public Flux<Student> findByName(String name) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("select * from student where name = :name")
+                .bind("name", name)
+                .map(RepositoryWithDatabaseClient::toStudent)
+                .all();
+    }
+
+    public Mono<Student> insert(Student student) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("insert into student (name) values (:name) returning id, name, version")
+                .bind("name", student.getName())
+                .map(RepositoryWithDatabaseClient::toStudent)
+                .one();
+    }
+
+    /**
+     * Как {@code StudentRepository.save}: без id вставка, с id - обновление существующей строки.
+     */
+    public Mono<Student> save(Student student) {
+        if (student.getId() == null) {
+            return insert(student);
+        }
+        return updateName(student.getId(), student.getName())
+                .switchIfEmpty(Mono.error(() -> new TransientDataAccessResourceException(
+                        "Failed to update table [student]; Row with Id [" + student.getId() + "] does not exist")));
+    }
+
+    public Mono<Student> updateName(long id, String name) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("update student set name = :name where id = :id returning *")
+                .bind("id", id)
+                .bind("name", name)
+                .map(RepositoryWithDatabaseClient::toStudent)
+                .one();
+    }
+
+    public Mono<Long> deleteReturningId(long id) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("delete from student where id = :id returning id")
+                .bind("id", id)
+                .map(row -> row.get("id", Long.class))
+                .one();
+    }
+
+    /**
+     * Вставляет всю пачку одним запросом: имена уходят одним параметром-массивом,
+     * поэтому текст запроса не зависит от размера пачки.
+     */
+    public Flux<Student> insertAll(List<Student> students) {
+        if (students.isEmpty()) {
+            return Flux.empty();
+        }
+        String[] names = students.stream().map(Student::getName).toArray(String[]::new);
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("insert into student (name) " +
+                        "select name from unnest(cast(:names as text[])) with ordinality as t(name, ord) order by ord " +
+                        "returning id, name, version")
+                .bind("names", names)
+                .map(RepositoryWithDatabaseClient::toStudent)
+                .all();
+    }
+
+    /**
+     * Обновляет имя, только если версия строки одна из {@code versions}; пусто - строки нет или версия другая.
+     */
+    public Mono<Student> updateNameIfVersion(long id, String name, Long[] versions) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("update student set name = :name where id = :id and version = any(cast(:versions as bigint[])) returning *")
+                .bind("id", id)
+                .bind("name", name)
+                .bind("versions", versions)
+                .map(RepositoryWithDatabaseClient::toStudent)
+                .one();
+    }
+
+    public Mono<Long> deleteIfVersion(long id, Long[] versions) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("delete from student where id = :id and version = any(cast(:versions as bigint[])) returning id")
+                .bind("id", id)
+                .bind("versions", versions)
+                .map(row -> row.get("id", Long.class))
+                .one();
+    }
+
+    /**
+     * Счетчик изменений таблицы: растет с каждым insert, update, delete и truncate.
+     */
+    public Mono<Long> findChangeCounter() {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("select cast(sum(value) as bigint) as value from student_change_counter")
+                .map(row -> row.get("value", Long.class))
+                .one();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Вставка для массовой загрузки: без {@code returning}, только число строк.
+     * С {@code keepIds} id берутся из данных, а уже существующие пропускаются, поэтому
+     * повторная загрузка той же пачки ничего не дублирует.
+     */
+    public Mono<Long> importAll(List<Student> students, boolean keepIds) {
+        if (students.isEmpty()) {
+            return Mono.just(0L);
+        }
+        String[] names = students.stream().map(Student::getName).toArray(String[]::new);
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        if (!keepIds) {
+            return client.sql("insert into student (name) select name from unnest(cast(:names as text[])) as t(name)")
+                    .bind("names", names)
+                    .fetch()
+                    .rowsUpdated();
+        }
+        Long[] ids = students.stream().map(Student::getId).toArray(Long[]::new);
+        return client.sql("insert into student (id, name) " +
+                        "select id, name from unnest(cast(:ids as bigint[]), cast(:names as text[])) as t(id, name) " +
+                        "on conflict (id) do nothing")
+                .bind("ids", ids)
+                .bind("names", names)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Переводит последовательность id за максимальный id в таблице, например после загрузки с готовыми id.
+     */
+    public Mono<Void> resetIdSequence() {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("select setval(pg_get_serial_sequence('student', 'id'), coalesce(max(id), 0) + 1, false) from student")
+                .then();
+    }
+
+    /**
+     * Переводит последовательность id на шаг {@code shards} так, чтобы она выдавала только id
+     * с {@code id % shards == shard}, и за все уже занятые id; см. функцию {@code student_align_id_sequence}.
+     */
+    public Mono<Void> alignIdSequence(int shard, int shards) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("select student_align_id_sequence(:shard, :shards)")
+                .bind("shard", shard)
+                .bind("shards", shards)
+                .then();
+    }
+
+    /**
+     * Обновляет имена пачкой одним запросом; строки, которых нет в таблице, не возвращаются.
+     */
+    public Flux<Student> updateAll(List<Student> students) {
+        if (students.isEmpty()) {
+            return Flux.empty();
+        }
+        Long[] ids = students.stream().map(Student::getId).toArray(Long[]::new);
+        String[] names = students.stream().map(Student::getName).toArray(String[]::new);
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("update student s set name = t.name " +
+                        "from unnest(cast(:ids as bigint[]), cast(:names as text[])) as t(id, name) " +
+                        "where s.id = t.id " +
+                        "returning s.id, s.name, s.version")
+                .bind("ids", ids)
+                .bind("names", names)
+                .map(RepositoryWithDatabaseClient::toStudent)
+                .all();
+    }
+
+    private static Student toStudent(Readable row) {
+        var id = row.get("id", Long.class);
+        var name = row.get("name", String.class);
+        var version = row.get("version", Long.class);
+        return new Student(id, name, version);
+    }
+
 }
@@ -7,6 +7,9 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import static org.springframework.data.relational.core.query.Criteria.where;
+import static org.springframework.data.relational.core.query.Query.query;
+
 @Service
 @RequiredArgsConstructor
 public class RepositoryWithEntityTemplate {
@@ -18,6 +21,18 @@ public class RepositoryWithEntityTemplate {
         return template.select(Student.class).all();
     }
 
+    public Mono<Student> findById(Long id) {
+        return template.selectOne(query(where("id").is(id)), Student.class);
+    }
+
+    public Flux<Student> findByName(String name) {
+        return template.select(query(where("name").is(name)), Student.class);
+    }
+
+    public Mono<Student> insert(Student student) {
+        return template.insert(student);
+    }
+
     public Mono<Void> delete(Student student) {
         return template.delete(student).then();
     }
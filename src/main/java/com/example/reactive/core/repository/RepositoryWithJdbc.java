@@ -0,0 +1,341 @@
+package com.example.reactive.core.repository;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SynchronousSink;
+import reactor.core.scheduler.Scheduler;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Те же запросы, что в {@link RepositoryWithDatabaseClient} и {@link StudentRepository}, но через
+ * блокирующий JDBC. Каждый вызов целиком (взять соединение, выполнить, прочитать) выполняется
+ * на {@code scheduler} - виртуальных потоках, если они есть, - и только результат отдается
+ * как {@code Mono}/{@code Flux}, так что вызывающий код не отличает этот путь от R2DBC.
+ * <p>
+ * Собирается в {@code StudentJdbcConfig}, когда включен {@code student.jdbc.enabled}.
+ */
+public class RepositoryWithJdbc implements StudentStore, AutoCloseable {
+
+    private final DataSource dataSource;
+    private final Scheduler scheduler;
+    private final AutoCloseable resources;
+    private final SQLExceptionTranslator exceptionTranslator = new SQLErrorCodeSQLExceptionTranslator("PostgreSQL");
+
+    /**
+     * @param resources закрывается вместе с репозиторием: пул соединений и планировщик
+     */
+    public RepositoryWithJdbc(DataSource dataSource, Scheduler scheduler, AutoCloseable resources) {
+        this.dataSource = dataSource;
+        this.scheduler = scheduler;
+        this.resources = resources;
+    }
+
+    @Override
+    public Mono<Student> findById(Long id) {
+        return one("select * from student where id = ?", statement -> statement.setLong(1, id));
+    }
+
+    public Flux<Student> findAllById(Long[] ids) {
+        return list("select * from student where id = any(?)", statement -> statement.setArray(1, array(statement, "bigint", ids)));
+    }
+
+    public Flux<Student> findAll() {
+        return list("select * from student", statement -> {
+        });
+    }
+
+    public Flux<Student> findByName(String name) {
+        return list("select * from student where name = ?", statement -> statement.setString(1, name));
+    }
+
+    @Override
+    public Flux<Student> findPage(long after, int limit) {
+        return list("select * from student where id > ? order by id limit ?", statement -> {
+            statement.setLong(1, after);
+            statement.setInt(2, limit);
+        });
+    }
+
+    @Override
+    public Flux<Student> findPageByName(String name, long after, int limit) {
+        return list("select * from student where name = ? and id > ? order by id limit ?", statement -> {
+            statement.setString(1, name);
+            statement.setLong(2, after);
+            statement.setInt(3, limit);
+        });
+    }
+
+    @Override
+    public Flux<Student> search(String query, SearchMode mode, int limit) {
+        String sql = switch (mode) {
+            case PREFIX -> "select * from student where lower(name) like lower(?) " +
+                    "order by lower(name) collate \"C\", id limit ?";
+            case EXACT -> "select * from student where lower(name) = lower(?) " +
+                    "order by id limit ?";
+            case FUZZY -> "select * from student where name % ? " +
+                    "order by similarity(name, ?) desc, id limit ?";
+        };
+        String value = mode == SearchMode.PREFIX ? escapeLike(query) + "%" : query;
+        return list(sql, statement -> {
+            int index = 1;
+            statement.setString(index++, value);
+            if (mode == SearchMode.FUZZY) {
+                statement.setString(index++, value);
+            }
+            statement.setInt(index, limit);
+        });
+    }
+
+    /**
+     * Курсором: в транзакции драйвер забирает по {@code fetchSize} строк, и следующая порция
+     * читается, только когда подписчик запросил следующие элементы. Соединение занято, пока поток не закончится.
+     */
+    @Override
+    public Flux<Student> findAll(int fetchSize) {
+        return stream("select * from student order by id", fetchSize, statement -> {
+        });
+    }
+
+    @Override
+    public Flux<Student> findByName(String name, int fetchSize) {
+        return stream("select * from student where name = ? order by id", fetchSize, statement -> statement.setString(1, name));
+    }
+
+    /**
+     * Как {@code StudentRepository.save}: без id вставка, с id - обновление существующей строки.
+     */
+    @Override
+    public Mono<Student> save(Student student) {
+        if (student.getId() == null) {
+            return one("insert into student (name) values (?) returning id, name, version",
+                    statement -> statement.setString(1, student.getName()));
+        }
+        return updateName(student.getId(), student.getName())
+                .switchIfEmpty(Mono.error(() -> new TransientDataAccessResourceException(
+                        "Failed to update table [student]; Row with Id [" + student.getId() + "] does not exist")));
+    }
+
+    @Override
+    public Flux<Student> insertAll(List<Student> students) {
+        if (students.isEmpty()) {
+            return Flux.empty();
+        }
+        String[] names = students.stream().map(Student::getName).toArray(String[]::new);
+        return list("insert into student (name) " +
+                        "select name from unnest(?) with ordinality as t(name, ord) order by ord " +
+                        "returning id, name, version",
+                statement -> statement.setArray(1, array(statement, "text", names)));
+    }
+
+    @Override
+    public Flux<Student> updateAll(List<Student> students) {
+        if (students.isEmpty()) {
+            return Flux.empty();
+        }
+        Long[] ids = students.stream().map(Student::getId).toArray(Long[]::new);
+        String[] names = students.stream().map(Student::getName).toArray(String[]::new);
+        return list("update student s set name = t.name " +
+                        "from unnest(?, ?) as t(id, name) " +
+                        "where s.id = t.id " +
+                        "returning s.id, s.name, s.version",
+                statement -> {
+                    statement.setArray(1, array(statement, "bigint", ids));
+                    statement.setArray(2, array(statement, "text", names));
+                });
+    }
+
+    @Override
+    public Mono<Student> updateName(long id, String name) {
+        return one("update student set name = ? where id = ? returning *", statement -> {
+            statement.setString(1, name);
+            statement.setLong(2, id);
+        });
+    }
+
+    @Override
+    public Mono<Student> updateNameIfVersion(long id, String name, Long[] versions) {
+        return one("update student set name = ? where id = ? and version = any(?) returning *", statement -> {
+            statement.setString(1, name);
+            statement.setLong(2, id);
+            statement.setArray(3, array(statement, "bigint", versions));
+        });
+    }
+
+    @Override
+    public Mono<Long> deleteReturningId(long id) {
+        return single("delete from student where id = ? returning id", statement -> statement.setLong(1, id));
+    }
+
+    @Override
+    public Mono<Long> deleteIfVersion(long id, Long[] versions) {
+        return single("delete from student where id = ? and version = any(?) returning id", statement -> {
+            statement.setLong(1, id);
+            statement.setArray(2, array(statement, "bigint", versions));
+        });
+    }
+
+    @Override
+    public Mono<Long> findChangeCounter() {
+        return single("select cast(sum(value) as bigint) from student_change_counter", statement -> {
+        });
+    }
+
+    @Override
+    public void close() throws Exception {
+        resources.close();
+    }
+
+    /**
+     * Запрос, возвращающий одно число в первой колонке.
+     */
+    private Mono<Long> single(String sql, Binder binder) {
+        return call(() -> {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(sql)) {
+                binder.bind(statement);
+                try (ResultSet rs = statement.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : null;
+                }
+            }
+        });
+    }
+
+    private Mono<Student> one(String sql, Binder binder) {
+        return call(() -> {
+            List<Student> students = query(sql, binder);
+            return students.isEmpty() ? null : students.get(0);
+        });
+    }
+
+    private Flux<Student> list(String sql, Binder binder) {
+        return call(() -> query(sql, binder)).flatMapIterable(students -> students);
+    }
+
+    private List<Student> query(String sql, Binder binder) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            binder.bind(statement);
+            try (ResultSet rs = statement.executeQuery()) {
+                List<Student> students = new ArrayList<>();
+                while (rs.next()) {
+                    students.add(toStudent(rs));
+                }
+                return students;
+            }
+        }
+    }
+
+    private Flux<Student> stream(String sql, int fetchSize, Binder binder) {
+        return Flux.generate(
+                        () -> Cursor.open(dataSource, sql, fetchSize, binder),
+                        (Cursor cursor, SynchronousSink<Student> sink) -> {
+                            try {
+                                if (cursor.rs.next()) {
+                                    sink.next(toStudent(cursor.rs));
+                                } else {
+                                    sink.complete();
+                                }
+                            } catch (SQLException e) {
+                                sink.error(translate(e));
+                            }
+                            return cursor;
+                        },
+                        Cursor::close)
+                .onErrorMap(SQLException.class, this::translate)
+                // каждый запрос подписчика выполняется на планировщике, а не в потоке, который его сделал
+                .subscribeOn(scheduler, true);
+    }
+
+    private <T> Mono<T> call(Callable<T> callable) {
+        return Mono.fromCallable(callable)
+                .onErrorMap(SQLException.class, this::translate)
+                .subscribeOn(scheduler);
+    }
+
+    private static Array array(PreparedStatement statement, String type, Object[] values) throws SQLException {
+        return statement.getConnection().createArrayOf(type, values);
+    }
+
+    /**
+     * Те же исключения Spring, что и у R2DBC-хранилища: нарушение уникальности - {@code DuplicateKeyException},
+     * конфликт сериализации - {@code PessimisticLockingFailureException}, обрыв соединения -
+     * {@code DataAccessResourceFailureException} и так далее, по SQLSTATE Postgres.
+     */
+    private RuntimeException translate(SQLException e) {
+        DataAccessException translated = exceptionTranslator.translate("student jdbc", null, e);
+        return translated != null ? translated : new UncategorizedSQLException("student jdbc", null, e);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static Student toStudent(ResultSet rs) throws SQLException {
+        long id = rs.getLong("id");
+        Long studentId = rs.wasNull() ? null : id;
+        long version = rs.getLong("version");
+        Long studentVersion = rs.wasNull() ? null : version;
+        return new Student(studentId, rs.getString("name"), studentVersion);
+    }
+
+    @FunctionalInterface
+    private interface Binder {
+
+        void bind(PreparedStatement statement) throws SQLException;
+
+    }
+
+    /**
+     * Открытый курсор: JDBC-драйвер Postgres читает порциями только внутри транзакции.
+     */
+    private static final class Cursor {
+
+        private final Connection connection;
+        private final PreparedStatement statement;
+        private final ResultSet rs;
+
+        private Cursor(Connection connection, PreparedStatement statement, ResultSet rs) {
+            this.connection = connection;
+            this.statement = statement;
+            this.rs = rs;
+        }
+
+        static Cursor open(DataSource dataSource, String sql, int fetchSize, Binder binder) throws SQLException {
+            Connection connection = dataSource.getConnection();
+            try {
+                connection.setAutoCommit(false);
+                PreparedStatement statement = connection.prepareStatement(sql);
+                statement.setFetchSize(fetchSize);
+                binder.bind(statement);
+                return new Cursor(connection, statement, statement.executeQuery());
+            } catch (SQLException | RuntimeException e) {
+                connection.close();
+                throw e;
+            }
+        }
+
+        void close() {
+            try (connection; statement; rs) {
+                connection.rollback();
+            } catch (SQLException ignored) {
+                // соединение вернется в пул, и пул сам разберется с его состоянием
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.example.reactive.core.repository;
+
+/**
+ * Как сопоставлять строку поиска с именем студента.
+ */
+public enum SearchMode {
+
+    /**
+     * Имя начинается со строки поиска без учета регистра; btree по {@code lower(name)}.
+     */
+    PREFIX,
+
+    /**
+     * Имя совпадает со строкой поиска без учета регистра; тот же btree.
+     */
+    EXACT,
+
+    /**
+     * Похожесть по триграммам, самые похожие первыми; gin-индекс pg_trgm.
+     */
+    FUZZY
+
+}
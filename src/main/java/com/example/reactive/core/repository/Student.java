@@ -1,9 +1,12 @@
 package com.example.reactive.core.repository;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.ReadOnlyProperty;
 import org.springframework.data.relational.core.mapping.Table;
 
 @Data
@@ -17,5 +20,18 @@ public class Student {
 
     private String name;
 
-}
+    /**
+     * Версия строки, растет с каждым update (триггер в базе). В JSON не попадает, клиент видит ее как ETag.
+     * Null, если источник версию не знает, например студент из снимка или только что сохраненный через save.
+     */
+    @JsonIgnore
+    @ReadOnlyProperty
+    @EqualsAndHashCode.Exclude
+    private Long version;
+
+    public Student(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
 
+}
@@ -1,7 +1,9 @@
 package com.example.reactive.core.repository;
 
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /**
  * Помимо ReactiveCrudRepository, существует также расширение ReactiveSortingRepository,
@@ -11,4 +13,23 @@ public interface StudentRepository extends ReactiveCrudRepository<Student, Long>
 
     Flux<Student> findByName(String name);
 
+    /**
+     * Keyset-пагинация: страница начинается сразу после последнего отданного id,
+     * поэтому стоимость страницы не зависит от того, насколько далеко клиент пролистал.
+     */
+    @Query("select * from student where id > :after order by id limit :limit")
+    Flux<Student> findPage(long after, int limit);
+
+    @Query("select * from student where name = :name and id > :after order by id limit :limit")
+    Flux<Student> findPageByName(String name, long after, int limit);
+
+    /**
+     * Изменение и чтение результата за один запрос; пустой результат значит, что строки нет.
+     */
+    @Query("update student set name = :name where id = :id returning *")
+    Mono<Student> updateName(long id, String name);
+
+    @Query("delete from student where id = :id returning id")
+    Mono<Long> deleteReturningId(long id);
+
 }
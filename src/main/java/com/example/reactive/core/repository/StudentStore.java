@@ -0,0 +1,71 @@
+package com.example.reactive.core.repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Где и как лежат студенты, с точки зрения {@code StudentService}: одна база через R2DBC, она же через
+ * JDBC ({@link RepositoryWithJdbc}) или несколько шардов ({@code StudentShards}). Реализация выбирается
+ * один раз в {@code StudentStoreConfig}, сервис о режиме не знает.
+ * <p>
+ * Списки упорядочены по id, кроме {@link #search}, у которого порядок свой для каждого режима.
+ */
+public interface StudentStore {
+
+    Mono<Student> findById(Long id);
+
+    /**
+     * Последнее записанное состояние строки - без склейки запросов, реплик и снимков;
+     * нужно, чтобы понять, почему не прошла условная запись.
+     */
+    default Mono<Student> findCurrentById(Long id) {
+        return findById(id);
+    }
+
+    /**
+     * Все строки курсором: в память читается по {@code fetchSize} строк.
+     */
+    Flux<Student> findAll(int fetchSize);
+
+    Flux<Student> findByName(String name, int fetchSize);
+
+    Flux<Student> findPage(long after, int limit);
+
+    Flux<Student> findPageByName(String name, long after, int limit);
+
+    Flux<Student> search(String query, SearchMode mode, int limit);
+
+    /**
+     * Без id вставка, с id - обновление существующей строки.
+     */
+    Mono<Student> save(Student student);
+
+    Flux<Student> insertAll(List<Student> students);
+
+    /**
+     * Обновляет имена существующих строк, несуществующие id пропускаются.
+     */
+    Flux<Student> updateAll(List<Student> students);
+
+    /**
+     * Пусто - строки нет.
+     */
+    Mono<Student> updateName(long id, String name);
+
+    /**
+     * Пусто - строки нет или ее версия не из {@code versions}.
+     */
+    Mono<Student> updateNameIfVersion(long id, String name, Long[] versions);
+
+    Mono<Long> deleteReturningId(long id);
+
+    Mono<Long> deleteIfVersion(long id, Long[] versions);
+
+    /**
+     * Растет с каждым изменением таблицы; пусто, если хранилище не может его дать.
+     */
+    Mono<Long> findChangeCounter();
+
+}
@@ -0,0 +1,247 @@
+package com.example.reactive.load;
+
+import com.example.reactive.core.StudentWebClient;
+import com.example.reactive.core.repository.SearchMode;
+import com.example.reactive.core.repository.Student;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Генератор нагрузки поверх {@link StudentWebClient}.
+ * <p>
+ * Два режима:
+ * <ul>
+ *     <li>{@code --mode=rate} - открытая модель: запросы стартуют по расписанию с частотой {@code --rate}
+ *     в секунду независимо от того, ответил ли сервер на предыдущие. Задержка считается от запланированного
+ *     момента старта, поэтому остановка сервера видна в хвосте распределения, а не прячется
+ *     (coordinated omission).</li>
+ *     <li>{@code --mode=concurrency} - закрытая модель: {@code --concurrency} клиентов, каждый шлет
+ *     следующий запрос после ответа на предыдущий.</li>
+ * </ul>
+ * Смесь операций задается весами: {@code --mix=get=60,list=10,search=10,create=10,update=5,delete=5}.
+ * С {@code --rsocket-uri=tcp://localhost:7000} чтение и массовая запись идут по RSocket.
+ * Первые {@code --warmup} не попадают в отчет. Результат пишется в JSON ({@code --report}), чтобы
+ * сравнивать прогоны между сборками.
+ * <p>
+ * Запуск из собранного jar:
+ * <pre>
+ * java -cp target/reactive-0.0.1-SNAPSHOT.jar -Dloader.main=com.example.reactive.load.LoadGenerator \
+ *     org.springframework.boot.loader.PropertiesLauncher --base-url=http://localhost:8087 --rate=500 --duration=60s
+ * </pre>
+ */
+public class LoadGenerator {
+
+    private final Map<String, String> options;
+    private final StudentWebClient client;
+    private final Map<Operation, Integer> mix;
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final List<Long> readableIds = new ArrayList<>();
+    private final ConcurrentLinkedQueue<Long> deletableIds = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int totalWeight;
+    private volatile long recordFrom;
+
+    LoadGenerator(Map<String, String> options) {
+        this.options = options;
+        this.client = new StudentWebClient(StudentWebClient.Options.builder()
+                .baseUrl(option("base-url", "http://localhost:8087"))
+                .maxConnections(Integer.parseInt(option("connections", "500")))
+                .http2(Boolean.parseBoolean(option("http2", "false")))
+                .rsocketUri(options.get("rsocket-uri"))
+                .build());
+        this.mix = parseMix(option("mix", "get=60,list=10,search=10,create=10,update=5,delete=5"));
+        this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        new LoadGenerator(options).run();
+    }
+
+    void run() throws IOException {
+        seed(Integer.parseInt(option("seed", "1000")));
+
+        Duration warmup = Duration.parse("PT" + option("warmup", "10s"));
+        Duration duration = Duration.parse("PT" + option("duration", "60s"));
+        long start = System.nanoTime();
+        recordFrom = start + warmup.toNanos();
+        long end = recordFrom + duration.toNanos();
+
+        String mode = option("mode", "rate");
+        if (mode.equals("rate")) {
+            runAtFixedRate(Double.parseDouble(option("rate", "500")), start, end);
+        } else {
+            runAtFixedConcurrency(Integer.parseInt(option("concurrency", "32")), end);
+        }
+        awaitInFlight(Duration.ofSeconds(30));
+
+        writeReport(mode, duration);
+        client.close();
+    }
+
+    private void seed(int count) {
+        List<Student> seeded = Flux.range(0, count * 2)
+                .flatMap(i -> client.create(new Student(null, "load " + i)), 32)
+                .collectList()
+                .block();
+        for (int i = 0; i < seeded.size(); i++) {
+            if (i % 2 == 0) {
+                readableIds.add(seeded.get(i).getId());
+            } else {
+                deletableIds.add(seeded.get(i).getId());
+            }
+        }
+    }
+
+    /**
+     * Открытая модель: один поток раздает старты по расписанию, сам запрос выполняется асинхронно.
+     */
+    void runAtFixedRate(double perSecond, long start, long end) {
+        long interval = (long) (1_000_000_000L / perSecond);
+        for (long intended = start; intended < end; intended += interval) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = nextOperation();
+            long intendedStart = intended;
+            inFlight.incrementAndGet();
+            execute(operation)
+                    .then()
+                    .doFinally(signal -> inFlight.decrementAndGet())
+                    .subscribe(
+                            null,
+                            error -> record(operation, intendedStart, false),
+                            () -> record(operation, intendedStart, true));
+        }
+    }
+
+    /**
+     * Закрытая модель: каждый из {@code concurrency} клиентов ждет ответа перед следующим запросом.
+     */
+    private void runAtFixedConcurrency(int concurrency, long end) {
+        Flux.range(0, concurrency)
+                .flatMap(worker -> Mono.defer(() -> {
+                            Operation operation = nextOperation();
+                            long started = System.nanoTime();
+                            return execute(operation)
+                                    .then(Mono.fromRunnable(() -> record(operation, started, true)))
+                                    .onErrorResume(e -> Mono.fromRunnable(() -> record(operation, started, false)));
+                        })
+                        .repeat(() -> System.nanoTime() < end), concurrency)
+                .blockLast();
+    }
+
+    Mono<?> execute(Operation operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long readableId = readableIds.get(random.nextInt(readableIds.size()));
+        return switch (operation) {
+            case GET -> client.get(readableId);
+            case LIST -> client.getAll().take(100).then();
+            case SEARCH -> client.search("load " + random.nextInt(10), SearchMode.PREFIX).then();
+            case CREATE -> client.create(new Student(null, "load created"))
+                    .doOnNext(created -> deletableIds.add(created.getId()));
+            case UPDATE -> client.update(new Student(readableId, "load " + random.nextInt(1000)));
+            case DELETE -> {
+                Long id = deletableIds.poll();
+                yield id != null ? client.delete(id) : Mono.empty();
+            }
+        };
+    }
+
+    OperationStats stats(Operation operation) {
+        return stats.get(operation);
+    }
+
+    private void record(Operation operation, long started, boolean success) {
+        if (started < recordFrom) {
+            return;
+        }
+        if (success) {
+            stats.get(operation).recordSuccess(System.nanoTime() - started);
+        } else {
+            stats.get(operation).recordError();
+        }
+    }
+
+    private Operation nextOperation() {
+        int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty operation mix");
+    }
+
+    void awaitInFlight(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(Duration.ofMillis(10).toNanos());
+        }
+    }
+
+    private void writeReport(String mode, Duration duration) throws IOException {
+        double seconds = duration.toMillis() / 1000.0;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", new LinkedHashMap<>(options));
+        report.put("mode", mode);
+        report.put("durationSeconds", seconds);
+        Map<String, Object> operations = new LinkedHashMap<>();
+        stats.forEach((operation, operationStats) -> {
+            if (mix.containsKey(operation)) {
+                operations.put(operation.name(), operationStats.report(seconds));
+            }
+        });
+        report.put("operations", operations);
+
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        Path path = Path.of(option("report", "target/load-report.json"));
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        mapper.writeValue(path.toFile(), report);
+        System.out.println(mapper.writeValueAsString(operations));
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split("=");
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+}
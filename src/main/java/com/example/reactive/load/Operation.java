@@ -0,0 +1,15 @@
+package com.example.reactive.load;
+
+/**
+ * Операции, из которых складывается нагрузка; каждой соответствует вызов {@link com.example.reactive.core.StudentWebClient}.
+ */
+public enum Operation {
+
+    GET,
+    LIST,
+    SEARCH,
+    CREATE,
+    UPDATE,
+    DELETE
+
+}
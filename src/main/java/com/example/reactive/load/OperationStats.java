@@ -0,0 +1,46 @@
+package com.example.reactive.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Гистограмма задержек и счетчики одной операции. Задержки хранятся в микросекундах.
+ */
+class OperationStats {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Histogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final AtomicLong errors = new AtomicLong();
+
+    void recordSuccess(long latencyNanos) {
+        latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_TRACKABLE_MICROS));
+    }
+
+    void recordError() {
+        errors.incrementAndGet();
+    }
+
+    Map<String, Object> report(double seconds) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("count", latency.getTotalCount());
+        report.put("errors", errors.get());
+        report.put("throughputPerSecond", latency.getTotalCount() / seconds);
+        report.put("p50Millis", millis(latency.getValueAtPercentile(50)));
+        report.put("p90Millis", millis(latency.getValueAtPercentile(90)));
+        report.put("p99Millis", millis(latency.getValueAtPercentile(99)));
+        report.put("p999Millis", millis(latency.getValueAtPercentile(99.9)));
+        report.put("maxMillis", millis(latency.getMaxValue()));
+        return report;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+}
@@ -0,0 +1,216 @@
+package com.example.reactive.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Сравнивает старт приложения в разных режимах: время от запуска процесса до первого успешного ответа
+ * на {@code --path} и RSS процесса сразу после этого ответа.
+ * <p>
+ * Режимы запускаются по очереди в каждом круге, чтобы дрейф машины делился между ними поровну;
+ * первые {@code --warmup} кругов не попадают в отчет (прогрев page cache и первая запись суммы changelog).
+ * {@code baseline} - запуск как сегодня, остальные добавляют по одной оптимизации и все вместе.
+ * Нужен jar из профиля fast-startup и доступная база; ее настройки передаются через {@code --app-args}:
+ * <pre>
+ * mvn -Pfast-startup -DskipTests package
+ * java -cp "target/reactive-0.0.1-SNAPSHOT.jar" com.example.reactive.load.StartupBenchmark --runs=5 \
+ *     --app-args="--spring.r2dbc.url=r2dbc:postgresql://localhost:5432/student --spring.liquibase.url=jdbc:postgresql://localhost:5432/student"
+ * </pre>
+ * RSS читается из {@code /proc}, на других системах в отчете -1.
+ */
+public class StartupBenchmark {
+
+    private static final Duration START_TIMEOUT = Duration.ofMinutes(2);
+
+    private final Map<String, String> options;
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+    StartupBenchmark(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        new StartupBenchmark(options).run();
+    }
+
+    void run() throws Exception {
+        Map<String, List<String>> variants = variants();
+        int warmup = Integer.parseInt(option("warmup", "1"));
+        int runs = Integer.parseInt(option("runs", "5"));
+        Map<String, List<Sample>> samples = new LinkedHashMap<>();
+        variants.keySet().forEach(variant -> samples.put(variant, new ArrayList<>()));
+
+        for (int round = 0; round < warmup + runs; round++) {
+            for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+                Sample sample = start(variant.getKey(), variant.getValue());
+                System.out.printf("%s %s: first response in %d ms, rss %d MB%n", round < warmup ? "warmup" : "run",
+                        variant.getKey(), sample.firstResponseMillis(), sample.rssMegabytes());
+                if (round >= warmup) {
+                    samples.get(variant.getKey()).add(sample);
+                }
+            }
+        }
+        writeReport(samples);
+    }
+
+    /**
+     * Команда запуска каждого режима; порядок - порядок в отчете.
+     */
+    private Map<String, List<String>> variants() {
+        String jar = jar().getFileName().toString();
+        String archive = Path.of(option("archive", "target/reactive.jsa")).toAbsolutePath().toString();
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        variants.put("baseline", List.of("-jar", jar));
+        variants.put("if-changed", List.of("-jar", jar, "--student.migrations.mode=if-changed"));
+        variants.put("aot", List.of("-Dspring.aot.enabled=true", "-jar", jar));
+        variants.put("cds", List.of("-XX:SharedArchiveFile=" + archive, "-Xlog:cds=error", "-jar", jar));
+        variants.put("all", List.of("-XX:SharedArchiveFile=" + archive, "-Xlog:cds=error", "-Dspring.aot.enabled=true",
+                "-jar", jar, "--student.migrations.mode=if-changed"));
+        return variants;
+    }
+
+    /**
+     * Архив CDS помнит путь к jar таким, каким он был на тренировочном прогоне, а там приложение
+     * запускается из каталога jar, поэтому и здесь каждый запуск идет из него.
+     */
+    private Path jar() {
+        return Path.of(option("jar", "target/reactive-0.0.1-SNAPSHOT.jar")).toAbsolutePath();
+    }
+
+    private Sample start(String variant, List<String> arguments) throws Exception {
+        String port = option("port", "18087");
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(arguments);
+        command.add("--server.port=" + port);
+        command.add("--spring.rsocket.server.port=0");
+        String appArgs = option("app-args", "").trim();
+        if (!appArgs.isEmpty()) {
+            command.addAll(Arrays.asList(appArgs.split("\\s+")));
+        }
+        Path log = Path.of(option("log-dir", "target"), "startup-" + variant + ".log").toAbsolutePath();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + option("path", "/students?limit=1")))
+                .timeout(Duration.ofSeconds(10))
+                .build();
+
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(jar().getParent().toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        try {
+            awaitFirstResponse(process, request, started, log);
+            long firstResponse = System.nanoTime() - started;
+            return new Sample(TimeUnit.NANOSECONDS.toMillis(firstResponse), rssMegabytes(process.pid()));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private void awaitFirstResponse(Process process, HttpRequest request, long started, Path log) throws Exception {
+        while (System.nanoTime() - started < START_TIMEOUT.toNanos()) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with " + process.exitValue() + ", see " + log);
+            }
+            try {
+                HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // порт еще не слушается
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException("No response within " + START_TIMEOUT + ", see " + log);
+    }
+
+    private static long rssMegabytes(long pid) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc", Long.toString(pid), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", "")) / 1024;
+                }
+            }
+        } catch (IOException e) {
+            // не Linux
+        }
+        return -1;
+    }
+
+    private void writeReport(Map<String, List<Sample>> samples) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", new LinkedHashMap<>(options));
+        long baselineMillis = median(samples.get("baseline"), Sample::firstResponseMillis);
+        long baselineRss = median(samples.get("baseline"), Sample::rssMegabytes);
+        Map<String, Map<String, Object>> variants = new LinkedHashMap<>();
+        samples.forEach((variant, runs) -> {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            long millis = median(runs, Sample::firstResponseMillis);
+            long rss = median(runs, Sample::rssMegabytes);
+            summary.put("firstResponseMillis", millis);
+            summary.put("firstResponseVsBaseline", ratio(millis, baselineMillis));
+            summary.put("rssMegabytes", rss);
+            summary.put("rssVsBaseline", ratio(rss, baselineRss));
+            summary.put("runs", runs);
+            variants.put(variant, summary);
+        });
+        report.put("variants", variants);
+
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        Path path = Path.of(option("report", "target/startup-report.json"));
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        mapper.writeValue(path.toFile(), report);
+
+        System.out.printf("%-12s %22s %14s%n", "variant", "first response, ms", "rss, MB");
+        variants.forEach((variant, summary) -> System.out.printf("%-12s %12d (x%.2f) %6d (x%.2f)%n", variant,
+                summary.get("firstResponseMillis"), summary.get("firstResponseVsBaseline"),
+                summary.get("rssMegabytes"), summary.get("rssVsBaseline")));
+    }
+
+    private static long median(List<Sample> samples, ToLongFunction<Sample> value) {
+        long[] values = samples.stream().mapToLong(value).sorted().toArray();
+        return values.length == 0 ? 0 : values[values.length / 2];
+    }
+
+    private static double ratio(long value, long baseline) {
+        return baseline <= 0 ? 0 : (double) value / baseline;
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    record Sample(long firstResponseMillis, long rssMegabytes) {
+    }
+
+}
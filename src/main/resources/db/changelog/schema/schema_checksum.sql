@@ -0,0 +1,10 @@
+--liquibase formatted sql
+
+--changeset maxdrv:create_schema_checksum
+-- контрольная сумма changelog после последнего прогона, см. student.migrations.mode
+create table if not exists schema_checksum
+(
+    change_log    text           primary key,
+    checksum      text           not null,
+    updated_at    timestamptz    not null default now()
+);
@@ -6,3 +6,263 @@ create table if not exists student
     id      bigserial    primary key,
     name    text         not null
 );
+
+--changeset maxdrv:create_student_name_id_index
+create index if not exists student_name_id_idx on student (name, id);
+
+--changeset maxdrv:create_student_name_search_indexes
+create extension if not exists pg_trgm;
+create index if not exists student_name_lower_idx on student (lower(name) text_pattern_ops);
+create index if not exists student_name_trgm_idx on student using gin (name gin_trgm_ops);
+
+--changeset maxdrv:create_student_notify_trigger splitStatements:false
+create or replace function student_notify() returns trigger as $$
+declare
+    payload text;
+begin
+    if (tg_op = 'DELETE') then
+        perform pg_notify('student_changes', json_build_object('op', tg_op, 'id', old.id)::text);
+        return old;
+    end if;
+    payload := json_build_object('op', tg_op, 'id', new.id, 'name', new.name)::text;
+    -- payload уведомления ограничен 8000 байт, длинное имя слушатель дочитает сам
+    if (octet_length(payload) > 7900) then
+        payload := json_build_object('op', tg_op, 'id', new.id)::text;
+    end if;
+    perform pg_notify('student_changes', payload);
+    return new;
+end;
+$$ language plpgsql;
+
+create trigger student_notify_trigger
+    after insert or update or delete on student
+    for each row execute function student_notify();
+
+--changeset maxdrv:add_student_version splitStatements:false
+alter table student add column if not exists version bigint not null default 0;
+
+-- версия растет при любом update, каким бы путем он ни шел
+create or replace function student_bump_version() returns trigger as $$
+begin
+    new.version := old.version + 1;
+    return new;
+end;
+$$ language plpgsql;
+
+create trigger student_version_trigger
+    before update on student
+    for each row execute function student_bump_version();
+
+--changeset maxdrv:create_student_change_counter splitStatements:false
+-- счетчик изменений таблицы для ETag списков; разбит на 16 строк по backend pid,
+-- чтобы одновременные записи не ждали блокировку одной строки
+create table if not exists student_change_counter
+(
+    slot    int       primary key,
+    value   bigint    not null
+);
+insert into student_change_counter (slot, value)
+select slot, 0 from generate_series(0, 15) as slot
+on conflict (slot) do nothing;
+
+create or replace function student_count_change() returns trigger as $$
+begin
+    update student_change_counter set value = value + 1 where slot = pg_backend_pid() % 16;
+    return null;
+end;
+$$ language plpgsql;
+
+create trigger student_change_counter_trigger
+    after insert or update or delete or truncate on student
+    for each statement execute function student_count_change();
+
+--changeset maxdrv:create_student_align_id_sequence splitStatements:false
+-- для шардирования: последовательность выдает только id с id % shards = shard и не ниже уже занятых.
+-- Если она уже так настроена, ничего не делает; иначе на время перенастройки блокирует запись в таблицу
+create or replace function student_align_id_sequence(shard int, shards int) returns void as $$
+declare
+    seq text := pg_get_serial_sequence('student', 'id');
+    step bigint;
+    last bigint;
+    top bigint;
+begin
+    select increment_by, last_value into step, last
+    from pg_sequences where format('%I.%I', schemaname, sequencename) = seq;
+    select max(id) into top from student;
+    if step = shards and mod(last, shards) = shard and last >= coalesce(top, 0) then
+        return;
+    end if;
+    lock table student in exclusive mode;
+    select last_value into last
+    from pg_sequences where format('%I.%I', schemaname, sequencename) = seq;
+    select greatest(coalesce(max(id), 0), coalesce(last, 0)) into top from student;
+    execute format('alter sequence %s increment by %s', seq, shards);
+    perform setval(seq, top + 1 + mod(mod(shard - top - 1, shards) + shards, shards), false);
+end;
+$$ language plpgsql;
+
+--changeset maxdrv:student_notify_per_statement splitStatements:false
+-- одно уведомление на оператор вместо уведомления на строку: пачки в тысячи строк иначе
+-- ставят в очередь тысячи уведомлений, а notify при коммите берет общую блокировку.
+-- Триггеры создаются выключенными, их включает StudentSnapshotService, когда снимок включен
+drop trigger if exists student_notify_trigger on student;
+drop function if exists student_notify();
+
+create or replace function student_notify_statement() returns trigger as $$
+declare
+    payload text;
+    changed bigint;
+    first_id bigint;
+    last_id bigint;
+begin
+    if (tg_op = 'DELETE') then
+        select count(*), min(id), max(id), json_build_object('op', tg_op, 'ids', json_agg(id))::text
+        into changed, first_id, last_id, payload
+        from old_rows;
+    else
+        select count(*), min(id), max(id), json_build_object('op', tg_op, 'rows', json_agg(json_build_object('id', id, 'name', name)))::text
+        into changed, first_id, last_id, payload
+        from new_rows;
+    end if;
+    if (changed = 0) then
+        return null;
+    end if;
+    -- payload уведомления ограничен 8000 байт, большую пачку слушатель перечитает по диапазону id
+    if (octet_length(payload) > 7900) then
+        payload := json_build_object('op', tg_op, 'from', first_id, 'to', last_id)::text;
+    end if;
+    perform pg_notify('student_changes', payload);
+    return null;
+end;
+$$ language plpgsql;
+
+-- у триггера с transition table может быть только одно событие
+create trigger student_notify_insert_trigger
+    after insert on student
+    referencing new table as new_rows
+    for each statement execute function student_notify_statement();
+
+create trigger student_notify_update_trigger
+    after update on student
+    referencing new table as new_rows
+    for each statement execute function student_notify_statement();
+
+create trigger student_notify_delete_trigger
+    after delete on student
+    referencing old table as old_rows
+    for each statement execute function student_notify_statement();
+
+alter table student disable trigger student_notify_insert_trigger;
+alter table student disable trigger student_notify_update_trigger;
+alter table student disable trigger student_notify_delete_trigger;
+
+--changeset maxdrv:student_align_id_sequence_is_called splitStatements:false
+-- pg_sequences.last_value пуст до первого nextval после setval(..., false), поэтому состояние
+-- последовательности читается из нее самой: следующий id - last_value или last_value + шаг, смотря по is_called
+create or replace function student_align_id_sequence(shard int, shards int) returns void as $$
+declare
+    seq text := pg_get_serial_sequence('student', 'id');
+    step bigint;
+    last bigint;
+    called boolean;
+    following bigint;
+    top bigint;
+begin
+    select seqincrement into step from pg_sequence where seqrelid = seq::regclass;
+    execute format('select last_value, is_called from %s', seq) into last, called;
+    following := case when called then last + step else last end;
+    select max(id) into top from student;
+    if step = shards and mod(following, shards) = shard and following > coalesce(top, 0) then
+        return;
+    end if;
+    lock table student in exclusive mode;
+    execute format('select last_value, is_called from %s', seq) into last, called;
+    select greatest(coalesce(max(id), 0), last) into top from student;
+    execute format('alter sequence %s increment by %s', seq, shards);
+    perform setval(seq, top + 1 + mod(mod(shard - top - 1, shards) + shards, shards), false);
+end;
+$$ language plpgsql;
+
+--changeset maxdrv:student_notify_listener_lease splitStatements:false
+-- триггеры уведомлений включены всегда, а платят за json_agg и notify записи, только пока хоть один
+-- StudentSnapshotService держит аренду: строку, которую он продлевает и которая сама истекает, если он пропал
+create table if not exists student_notify_listener (
+    instance text primary key,
+    expires_at timestamptz not null
+);
+
+create or replace function student_notify_statement() returns trigger as $$
+declare
+    payload text;
+    changed bigint;
+    first_id bigint;
+    last_id bigint;
+begin
+    if not exists (select 1 from student_notify_listener where expires_at > now()) then
+        return null;
+    end if;
+    if (tg_op = 'DELETE') then
+        select count(*), min(id), max(id), json_build_object('op', tg_op, 'ids', json_agg(id))::text
+        into changed, first_id, last_id, payload
+        from old_rows;
+    else
+        select count(*), min(id), max(id), json_build_object('op', tg_op, 'rows', json_agg(json_build_object('id', id, 'name', name)))::text
+        into changed, first_id, last_id, payload
+        from new_rows;
+    end if;
+    if (changed = 0) then
+        return null;
+    end if;
+    -- payload уведомления ограничен 8000 байт, большую пачку слушатель перечитает по диапазону id
+    if (octet_length(payload) > 7900) then
+        payload := json_build_object('op', tg_op, 'from', first_id, 'to', last_id)::text;
+    end if;
+    perform pg_notify('student_changes', payload);
+    return null;
+end;
+$$ language plpgsql;
+
+alter table student enable trigger student_notify_insert_trigger;
+alter table student enable trigger student_notify_update_trigger;
+alter table student enable trigger student_notify_delete_trigger;
+
+--changeset maxdrv:student_change_counter_skip_empty splitStatements:false
+-- оператор без строк (update/delete мимо всех строк, insert из пустого select) не меняет таблицу,
+-- поэтому и ETag списков не сбрасывает. Пустоту видно только по transition table, а она разрешена
+-- триггеру лишь с одним событием: отдельный триггер на каждое, truncate без таблицы считается всегда
+drop trigger if exists student_change_counter_trigger on student;
+
+create or replace function student_count_change() returns trigger as $$
+begin
+    if (tg_op = 'DELETE') then
+        if not exists (select 1 from old_rows) then
+            return null;
+        end if;
+    elsif (tg_op <> 'TRUNCATE') then
+        if not exists (select 1 from new_rows) then
+            return null;
+        end if;
+    end if;
+    update student_change_counter set value = value + 1 where slot = pg_backend_pid() % 16;
+    return null;
+end;
+$$ language plpgsql;
+
+create trigger student_change_counter_insert_trigger
+    after insert on student
+    referencing new table as new_rows
+    for each statement execute function student_count_change();
+
+create trigger student_change_counter_update_trigger
+    after update on student
+    referencing new table as new_rows
+    for each statement execute function student_count_change();
+
+create trigger student_change_counter_delete_trigger
+    after delete on student
+    referencing old table as old_rows
+    for each statement execute function student_count_change();
+
+create trigger student_change_counter_truncate_trigger
+    after truncate on student
+    for each statement execute function student_count_change();
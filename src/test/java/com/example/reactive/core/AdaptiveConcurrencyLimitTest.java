@@ -0,0 +1,64 @@
+package com.example.reactive.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveConcurrencyLimitTest {
+
+    @Test
+    void testRejectsAboveLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 1.5);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+
+        limit.release(-1);
+        assertTrue(limit.tryAcquire());
+        assertEquals(2, limit.getInFlight());
+    }
+
+    @Test
+    void testLimitFollowsLatency() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 4, 200, 1.5);
+
+        // под полной нагрузкой с ровной задержкой предел растет
+        saturate(limit, 200, TimeUnit.MILLISECONDS.toNanos(5));
+        int grown = limit.getLimit();
+        assertTrue(grown > 20, "limit " + grown);
+
+        // база затормозила в 10 раз - предел падает
+        saturate(limit, 3, TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(limit.getLimit() < grown / 2, "limit " + limit.getLimit());
+    }
+
+    @Test
+    void testLimitDoesNotGrowWhenUnderused() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 4, 200, 1.5);
+
+        for (int i = 0; i < 500; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(TimeUnit.MILLISECONDS.toNanos(5));
+        }
+
+        assertEquals(20, limit.getLimit());
+    }
+
+    private static void saturate(AdaptiveConcurrencyLimit limit, int rounds, long rtt) {
+        for (int i = 0; i < rounds; i++) {
+            int acquired = 0;
+            while (limit.tryAcquire()) {
+                acquired++;
+            }
+            for (int j = 0; j < acquired; j++) {
+                limit.release(rtt);
+            }
+        }
+    }
+
+}
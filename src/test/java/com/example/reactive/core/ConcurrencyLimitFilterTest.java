@@ -0,0 +1,71 @@
+package com.example.reactive.core;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = {"student.limiter.read.initial-limit=0", "student.limiter.read.min-limit=0"})
+@AutoConfigureWebTestClient
+public class ConcurrencyLimitFilterTest {
+
+    @Autowired
+    WebTestClient webClient;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void testRejectsAboveLimitWithRetryAfter() {
+        double rejected = meterRegistry.counter("student.limiter.rejected", "kind", "read").count();
+
+        webClient.get().uri("/students/1")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "1");
+
+        assertEquals(rejected + 1, meterRegistry.counter("student.limiter.rejected", "kind", "read").count());
+        // подписки на изменения не ограничиваются
+        webClient.get().uri("/students/changes")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class)
+                .getResponseBody()
+                .take(0)
+                .blockLast();
+    }
+
+    @Test
+    void testStreamingResponseReleasesSlotOnCommit() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(new StudentProperties(), registry);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/students/export"));
+
+        // тело, которое начали отдавать и не закончили
+        Disposable response = filter.filter(exchange, ex -> ex.getResponse().writeWith(Flux.concat(
+                        Flux.just(DefaultDataBufferFactory.sharedInstance.wrap("{}\n".getBytes(StandardCharsets.UTF_8))),
+                        Flux.never())))
+                .subscribe();
+        try {
+            assertEquals(0, registry.get("student.limiter.inflight").tag("kind", "read").gauge().value());
+        } finally {
+            response.dispose();
+        }
+        assertEquals(0, registry.get("student.limiter.inflight").tag("kind", "read").gauge().value());
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.example.reactive.core;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.search.Search;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SchedulerMetricsTest {
+
+    @Test
+    void testExecutorMetersLiveAsLongAsTheExecutor() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        try {
+            SchedulerMetrics.install();
+            Scheduler scheduler = Schedulers.newSingle("metrics-test");
+            Mono.fromCallable(() -> 1).subscribeOn(scheduler).block();
+            String name = scheduler.toString().replaceAll("\\W+", "_");
+
+            assertEquals(1, Search.in(registry).name("executor").tag("scheduler", name).timer().count());
+            assertTrue(Search.in(registry).name("executor.queued").tag("scheduler", name).gauge() != null);
+
+            scheduler.dispose();
+            assertTrue(Search.in(registry).name(n -> n.startsWith("executor")).tag("scheduler", name).meters().isEmpty());
+        } finally {
+            Metrics.removeRegistry(registry);
+        }
+    }
+
+}
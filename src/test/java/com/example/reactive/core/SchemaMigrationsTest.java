@@ -0,0 +1,136 @@
+package com.example.reactive.core;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SchemaMigrationsTest {
+
+    static final String CHANGE_LOG = "classpath:db/changelog/changelog.xml";
+
+    @Test
+    void testIfChangedSkipsLiquibaseWhenChecksumMatches() throws Exception {
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.start()) {
+            DataSource dataSource = postgres.getPostgresDatabase();
+            String checksum = SchemaMigrations.checksum(new DefaultResourceLoader(), CHANGE_LOG);
+            assertEquals(checksum, SchemaMigrations.checksum(new DefaultResourceLoader(), CHANGE_LOG));
+            assertFalse(SchemaMigrations.upToDate(dataSource, CHANGE_LOG, checksum));
+
+            SchemaMigrations.run(liquibase(dataSource), MigrationMode.IF_CHANGED);
+            assertTrue(SchemaMigrations.upToDate(dataSource, CHANGE_LOG, checksum));
+            assertEquals(1, studentTables(dataSource));
+
+            // сумма совпадает, поэтому пропавшую таблицу Liquibase уже не вернет
+            execute(dataSource, "drop table student cascade");
+            SchemaMigrations.run(liquibase(dataSource), MigrationMode.IF_CHANGED);
+            assertEquals(0, studentTables(dataSource));
+
+            execute(dataSource, "update schema_checksum set checksum = 'stale'");
+            execute(dataSource, "delete from databasechangelog where filename like '%student.sql'");
+            SchemaMigrations.run(liquibase(dataSource), MigrationMode.IF_CHANGED);
+            assertEquals(1, studentTables(dataSource));
+            assertTrue(SchemaMigrations.upToDate(dataSource, CHANGE_LOG, checksum));
+        }
+    }
+
+    @Test
+    void testNotifyTriggersStayQuietWithoutListenerLease() throws Exception {
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.start()) {
+            DataSource dataSource = postgres.getPostgresDatabase();
+            SchemaMigrations.run(liquibase(dataSource), MigrationMode.ALWAYS);
+            try (Connection listener = dataSource.getConnection();
+                 Statement listen = listener.createStatement()) {
+                listen.execute("listen " + StudentSnapshotService.CHANNEL);
+
+                execute(dataSource, "insert into student (name) values ('nobody listens')");
+                assertEquals(0, notifications(listener));
+
+                execute(dataSource, "insert into student_notify_listener values ('test', now() + interval '1 minute')");
+                execute(dataSource, "insert into student (name) values ('leased')");
+                execute(dataSource, "update student set name = name where id < 0");
+                assertEquals(1, notifications(listener));
+
+                execute(dataSource, "update student_notify_listener set expires_at = now() - interval '1 second'");
+                execute(dataSource, "delete from student");
+                assertEquals(0, notifications(listener));
+            }
+        }
+    }
+
+    @Test
+    void testChangeCounterIgnoresStatementsWithoutRows() throws Exception {
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.start()) {
+            DataSource dataSource = postgres.getPostgresDatabase();
+            SchemaMigrations.run(liquibase(dataSource), MigrationMode.ALWAYS);
+
+            long version = changeCounter(dataSource);
+            execute(dataSource, "update student set name = name where id < 0");
+            execute(dataSource, "delete from student where id < 0");
+            execute(dataSource, "insert into student (name) select name from student where id < 0");
+            assertEquals(version, changeCounter(dataSource));
+
+            execute(dataSource, "insert into student (name) values ('counted')");
+            assertEquals(version + 1, changeCounter(dataSource));
+            execute(dataSource, "update student set name = 'counted again'");
+            execute(dataSource, "delete from student");
+            assertEquals(version + 3, changeCounter(dataSource));
+            execute(dataSource, "truncate student");
+            assertEquals(version + 4, changeCounter(dataSource));
+        }
+    }
+
+    private static long changeCounter(DataSource dataSource) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select sum(value) from student_change_counter")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static int notifications(Connection listener) throws Exception {
+        try (Statement statement = listener.createStatement()) {
+            // уведомления доставляются драйвером вместе с ответом на очередной запрос
+            statement.execute("select 1");
+        }
+        PGNotification[] received = listener.unwrap(PGConnection.class).getNotifications();
+        return received == null ? 0 : received.length;
+    }
+
+    private static SpringLiquibase liquibase(DataSource dataSource) {
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog(CHANGE_LOG);
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        return liquibase;
+    }
+
+    private static int studentTables(DataSource dataSource) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select count(*) from pg_tables where tablename = 'student'")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void execute(DataSource dataSource, String sql) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+}
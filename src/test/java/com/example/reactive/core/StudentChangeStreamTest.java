@@ -0,0 +1,94 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.Student;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StudentChangeStreamTest {
+
+    private final StudentChangeStream stream = stream(8, 4);
+
+    @Test
+    void testReplayFromLastEventId() {
+        for (long id = 1; id <= 5; id++) {
+            stream.created(new Student(id, "student " + id));
+        }
+
+        StepVerifier.create(stream.subscribe(eventId(3)).map(StudentChange::getSequence))
+                .expectNext(4L, 5L)
+                .then(() -> stream.deleted(1L))
+                .expectNext(6L)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testResyncWhenReplayIsGone() {
+        for (long id = 1; id <= 20; id++) {
+            stream.created(new Student(id, "student " + id));
+        }
+
+        StepVerifier.create(stream.subscribe(eventId(2)))
+                .expectNextMatches(change -> change.getType() == StudentChange.Type.RESYNC && change.getSequence() == 20)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testSlowSubscriberGetsResyncAndProducerNeverWaits() {
+        List<StudentChange> received = new ArrayList<>();
+        StepVerifier.create(stream.subscribe(null), 0)
+                .expectSubscription()
+                .then(() -> {
+                    for (long id = 1; id <= 1000; id++) {
+                        stream.created(new Student(id, "student " + id));
+                    }
+                })
+                .thenRequest(Long.MAX_VALUE)
+                .recordWith(() -> received)
+                .thenConsumeWhile(change -> true)
+                .verifyComplete();
+
+        StudentChange last = received.get(received.size() - 1);
+        assertEquals(StudentChange.Type.RESYNC, last.getType());
+        // max-pending в очереди, одно событие в publishOn и resync
+        assertTrue(received.size() <= 4 + 1 + 1);
+        for (int i = 0; i < received.size() - 1; i++) {
+            assertEquals(i + 1, received.get(i).getSequence());
+        }
+    }
+
+    @Test
+    void testResyncAfterRestart() {
+        for (long id = 1; id <= 5; id++) {
+            stream.created(new Student(id, "student " + id));
+        }
+
+        // тот же номер от процесса до перезапуска - не повод повторять чужие события
+        StepVerifier.create(stream.subscribe(new StudentChange.EventId("previous", 3)))
+                .expectNextMatches(change -> change.getType() == StudentChange.Type.RESYNC && change.getSequence() == 5)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private StudentChange.EventId eventId(long sequence) {
+        String epoch = stream.subscribe(new StudentChange.EventId("", 0)).blockFirst().getEpoch();
+        return StudentChange.EventId.parse(new StudentChange(epoch, sequence, null, null, null).eventId());
+    }
+
+    private static StudentChangeStream stream(int replaySize, int maxPending) {
+        StudentProperties properties = new StudentProperties();
+        properties.getChanges().setReplaySize(replaySize);
+        properties.getChanges().setMaxPending(maxPending);
+        return new StudentChangeStream(properties, new SimpleMeterRegistry());
+    }
+
+}
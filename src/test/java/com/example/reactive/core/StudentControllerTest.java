@@ -7,11 +7,31 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.ResolvableType;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.EncoderHttpMessageWriter;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
@@ -22,6 +42,9 @@ public class StudentControllerTest {
     @Autowired
     WebTestClient webClient;
 
+    @Autowired
+    ServerCodecConfigurer codecConfigurer;
+
     @Test
 //    @WithMockUser(roles = "USER")
     void test_getStudents() {
@@ -52,4 +75,344 @@ public class StudentControllerTest {
                 .jsonPath("$.name").isEqualTo(newStudent.getName());
     }
 
+    @Test
+    void testAddNewStudentsBatch() {
+        Flux<Student> students = Flux.range(0, 3).map(i -> new Student(null, "batch " + i));
+
+        webClient.post().uri("/students/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .body(students, Student.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3)
+                .jsonPath("$[0].id").isNotEmpty()
+                .jsonPath("$[2].name").isEqualTo("batch 2");
+    }
+
+    @Test
+    void testListStudentsByPages() {
+        String name = "paged student";
+        webClient.post().uri("/students/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(Flux.range(0, 3).map(i -> new Student(null, name)), Student.class)
+                .exchange()
+                .expectStatus().isOk();
+
+        String token = webClient.get().uri(uriBuilder -> uriBuilder.path("/students")
+                        .queryParam("name", name)
+                        .queryParam("limit", 2)
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Student.class).hasSize(2)
+                .returnResult()
+                .getResponseHeaders()
+                .getFirst(StudentController.NEXT_PAGE_TOKEN);
+
+        webClient.get().uri(uriBuilder -> uriBuilder.path("/students")
+                        .queryParam("name", name)
+                        .queryParam("limit", 2)
+                        .queryParam("after", token)
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(StudentController.NEXT_PAGE_TOKEN)
+                .expectBodyList(Student.class).hasSize(1);
+    }
+
+    @Test
+    void testStreamStudents() {
+        String name = "streamed student";
+        webClient.post().uri("/students/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(Flux.range(0, 3).map(i -> new Student(null, name)), Student.class)
+                .exchange()
+                .expectStatus().isOk();
+
+        webClient.get().uri(uriBuilder -> uriBuilder.path("/students")
+                        .queryParam("name", name)
+                        .build())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(Student.class).hasSize(3);
+    }
+
+    @Test
+    void testListStudentsWithoutAcceptIsJson() {
+        webClient.get().uri("/students")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    void testDeleteStudentEvictsCachedLookup() {
+        Student created = webClient.post().uri("/students")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new Student(null, "to be deleted")), Student.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Student.class)
+                .returnResult()
+                .getResponseBody();
+
+        webClient.get().uri("/students/{id}", created.getId())
+                .exchange()
+                .expectStatus().isOk();
+
+        webClient.delete().uri("/students/{id}", created.getId())
+                .exchange()
+                .expectStatus().isOk();
+
+        webClient.get().uri("/students/{id}", created.getId())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testGetStudentsByIds() {
+        List<Student> created = webClient.post().uri("/students/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(Flux.range(0, 3).map(i -> new Student(null, "multi get " + i)), Student.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Student.class)
+                .returnResult()
+                .getResponseBody();
+
+        webClient.get().uri("/students?ids={first},{missing},{last}",
+                        created.get(2).getId(), Long.MAX_VALUE, created.get(0).getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Student.class)
+                .isEqualTo(List.of(created.get(2), created.get(0)));
+    }
+
+    @Test
+    void testUpdateStudent() {
+        Student created = webClient.post().uri("/students")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new Student(null, "before update")), Student.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Student.class)
+                .returnResult()
+                .getResponseBody();
+
+        webClient.put().uri("/students/{id}", created.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new Student(null, "after update")), Student.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Student.class)
+                .isEqualTo(new Student(created.getId(), "after update"));
+
+        webClient.put().uri("/students/{id}", Long.MAX_VALUE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new Student(null, "nobody")), Student.class)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testConditionalRequestsWithETags() {
+        Student created = webClient.post().uri("/students")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new Student(null, "etag student")), Student.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Student.class)
+                .returnResult()
+                .getResponseBody();
+
+        webClient.get().uri("/students/{id}", created.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectBody().jsonPath("$.version").doesNotExist();
+        webClient.get().uri("/students/{id}", created.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        webClient.put().uri("/students/{id}", created.getId())
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new Student(null, "etag renamed")), Student.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"");
+        // второй клиент со старой версией не затирает чужое изменение
+        webClient.put().uri("/students/{id}", created.getId())
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new Student(null, "lost update")), Student.class)
+                .exchange()
+                .expectStatus().isEqualTo(412);
+        webClient.delete().uri("/students/{id}", created.getId())
+                .header(HttpHeaders.IF_MATCH, "W/\"1\"")
+                .exchange()
+                .expectStatus().isEqualTo(412);
+
+        String listETag = webClient.get().uri("/students?limit=5")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .returnResult(String.class)
+                .getResponseHeaders()
+                .getETag();
+        webClient.get().uri("/students?limit=5")
+                .header(HttpHeaders.IF_NONE_MATCH, listETag)
+                .exchange()
+                .expectStatus().isNotModified();
+
+        webClient.delete().uri("/students/{id}", created.getId())
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .exchange()
+                .expectStatus().isOk();
+        webClient.get().uri("/students?limit=5")
+                .header(HttpHeaders.IF_NONE_MATCH, listETag)
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void testConnectionPoolMetricsExposed() {
+        webClient.get().uri("/students/{id}", Long.MAX_VALUE - 1)
+                .exchange()
+                .expectStatus().isNotFound();
+
+        webClient.get().uri("/actuator/metrics/{name}", TimedConnectionFactory.ACQUIRE_TIMER)
+                .exchange()
+                .expectStatus().isOk();
+        webClient.get().uri("/actuator/metrics/r2dbc.pool.acquired")
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void testPipelineMetricsExposed() {
+        webClient.get().uri("/students/{id}", Long.MAX_VALUE - 2)
+                .exchange()
+                .expectStatus().isNotFound();
+
+        webClient.get().uri("/actuator/metrics/{name}?tag=operation:findStudentById", PipelineMetrics.SERVICE + ".flow.duration")
+                .exchange()
+                .expectStatus().isOk();
+        webClient.get().uri("/actuator/metrics/{name}", PipelineMetrics.REPOSITORY + ".flow.duration")
+                .exchange()
+                .expectStatus().isOk();
+        webClient.get().uri("/actuator/metrics/http.server.requests")
+                .exchange()
+                .expectStatus().isOk();
+        webClient.get().uri("/actuator/metrics/student.limiter.inflight?tag=kind:read")
+                .exchange()
+                .expectStatus().isOk();
+
+        // декоратор SchedulerMetrics ставит инициализатор контекста, а не main
+        Scheduler scheduler = Schedulers.newSingle("metrics-test");
+        try {
+            webClient.get().uri("/actuator/metrics/executor.active?tag=scheduler:single_metrics_test_")
+                    .exchange()
+                    .expectStatus().isOk();
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    @Test
+    void testStudentEncoderRegisteredBeforeJackson() {
+        ResolvableType type = ResolvableType.forClass(Student.class);
+        for (MediaType mediaType : List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON)) {
+            HttpMessageWriter<?> writer = codecConfigurer.getWriters().stream()
+                    .filter(w -> w.canWrite(type, mediaType))
+                    .findFirst()
+                    .orElseThrow();
+            assertTrue(writer instanceof EncoderHttpMessageWriter<?> encoderWriter
+                    && encoderWriter.getEncoder() instanceof StudentJsonEncoder);
+        }
+    }
+
+    @Test
+    void testChangesStream() {
+        Flux<ServerSentEvent<StudentChange>> events = webClient.get().uri("/students/changes")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<StudentChange>>() {
+                })
+                .getResponseBody()
+                .filter(event -> event.data() != null);
+
+        StepVerifier.create(events)
+                .then(() -> webClient.post().uri("/students")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(Mono.just(new Student(null, "sse student")), Student.class)
+                        .exchange()
+                        .expectStatus().isOk())
+                .expectNextMatches(event -> "created".equals(event.event())
+                        && "sse student".equals(event.data().getName())
+                        && event.data().eventId().equals(event.id()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+    }
+
+    @Test
+    void testExportGzipCsvAndNdjsonByRange() throws IOException {
+        List<Student> created = webClient.post().uri("/students/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .body(Flux.just(new Student(null, "export, \"quoted\""), new Student(null, "экспорт"),
+                        new Student(null, "export plain")), Student.class)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Student.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+        long from = created.get(0).getId();
+        long to = created.get(2).getId() + 1;
+
+        byte[] csv = webClient.get().uri("/students/export?format=csv&from={from}&to={to}", from, to)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/gzip")
+                .expectHeader().doesNotExist(HttpHeaders.CONTENT_ENCODING)
+                .expectHeader().value(HttpHeaders.CONTENT_DISPOSITION, disposition -> assertTrue(disposition.contains(".csv.gz")))
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+        assertEquals("id,name\n"
+                + from + ",\"export, \"\"quoted\"\"\"\n"
+                + (from + 1) + ",экспорт\n"
+                + (from + 2) + ",export plain\n", gunzip(csv));
+
+        String ndjson = webClient.get().uri("/students/export?from={from}&to={to}&compression=none", from + 1, to)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+        assertEquals("{\"id\":" + (from + 1) + ",\"name\":\"экспорт\"}\n"
+                + "{\"id\":" + (from + 2) + ",\"name\":\"export plain\"}\n", ndjson);
+
+        webClient.get().uri("/students/export/ranges?parts=3")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(StudentExporter.Range.class)
+                .value(ranges -> assertTrue(ranges.get(ranges.size() - 1).getTo() > created.get(2).getId()));
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
 }
@@ -0,0 +1,48 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.Student;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = {"student.group-commit.enabled=true", "student.group-commit.window=50ms"})
+public class StudentGroupCommitTest {
+
+    @Autowired
+    StudentService studentService;
+
+    @Test
+    void testConcurrentInsertsGetTheirOwnIds() {
+        List<Student> saved = Flux.range(0, 200)
+                .flatMap(i -> studentService.addNewStudent(new Student(null, "group commit " + i)), 200)
+                .collectList()
+                .block();
+
+        assertEquals(200, saved.size());
+        assertEquals(200, saved.stream().map(Student::getId).distinct().count());
+        for (Student student : saved) {
+            StepVerifier.create(studentService.findStudentById(student.getId()))
+                    .expectNext(student)
+                    .verifyComplete();
+        }
+    }
+
+    @Test
+    void testFailedRowDoesNotFailOthers() {
+        Mono<Student> good = studentService.addNewStudent(new Student(null, "group commit good"));
+        Mono<Student> bad = studentService.addNewStudent(new Student(null, null));
+
+        StepVerifier.create(Flux.merge(good.map(Student::getName), bad.map(Student::getName).onErrorReturn("failed"))
+                        .sort())
+                .expectNext("failed", "group commit good")
+                .verifyComplete();
+    }
+
+}
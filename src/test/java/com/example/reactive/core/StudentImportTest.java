@@ -0,0 +1,181 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.RepositoryWithDatabaseClient;
+import com.example.reactive.core.repository.Student;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.unit.DataSize;
+import reactor.test.StepVerifier;
+
+import javax.sql.DataSource;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class StudentImportTest {
+
+    @Autowired
+    RepositoryWithDatabaseClient repository;
+
+    @Autowired
+    StudentService studentService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    DataSource dataSource;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testParseCsvAndNdjson() {
+        ByteBuffer csv = ByteBuffer.wrap("1,plain\r\n\n2,\"with, comma\nand \"\"quotes\"\"\"\n3,\n"
+                .getBytes(StandardCharsets.UTF_8));
+        StudentFileParser csvParser = new StudentFileParser(csv, 0, ExportFormat.CSV, true);
+        assertEquals(List.of(new Student(1L, "plain"), new Student(2L, "with, comma\nand \"quotes\"")), csvParser.next(2));
+        assertEquals(List.of(new Student(3L, "")), csvParser.next(2));
+        assertEquals(List.of(), csvParser.next(2));
+
+        ByteBuffer json = ByteBuffer.wrap("{\"id\":7,\"extra\":true,\"name\":\"\\u00e9t\\\"é\"}\n{ \"name\" : \"x\" }"
+                .getBytes(StandardCharsets.UTF_8));
+        StudentFileParser jsonParser = new StudentFileParser(json, 0, ExportFormat.NDJSON, false);
+        assertEquals(List.of(new Student(7L, "ét\"é"), new Student(null, "x")), jsonParser.next(10));
+    }
+
+    @Test
+    void testImportCsvInSegmentsIsIdempotentWithKeepIds() throws Exception {
+        StringBuilder csv = new StringBuilder("id,name\n");
+        for (int i = 0; i < 100; i++) {
+            csv.append(50_000_000 + i).append(",").append(i % 10 == 0 ? "\"import\n" + i + "\"" : "import " + i).append('\n');
+        }
+        Path file = dir.resolve("students.csv");
+        Files.writeString(file, csv);
+
+        StudentProperties properties = new StudentProperties();
+        properties.getBulkImport().setFile(file);
+        properties.getBulkImport().setSegmentSize(DataSize.ofBytes(200));
+        properties.getBulkImport().setBatchSize(7);
+        properties.getBulkImport().setParallelism(3);
+        properties.getBulkImport().setKeepIds(true);
+        StudentImportCommand command = new StudentImportCommand(repository, properties, meterRegistry, Optional.empty());
+
+        command.run();
+        command.run();
+
+        assertFalse(Files.exists(dir.resolve("students.csv.checkpoint")));
+        StepVerifier.create(studentService.findStudentById(50_000_010L))
+                .expectNext(new Student(50_000_010L, "import\n10"))
+                .verifyComplete();
+        StepVerifier.create(studentService.findStudentById(50_000_099L))
+                .expectNext(new Student(50_000_099L, "import 99"))
+                .verifyComplete();
+        StepVerifier.create(repository.findRange(50_000_000L, 50_000_100L, 100).count())
+                .expectNext(100L)
+                .verifyComplete();
+    }
+
+    @Test
+    void testResumeFromPartialCheckpoint() throws Exception {
+        // строки одной длины, без id: повторно записанная строка была бы лишней, так что счет строк точный
+        int total = 60;
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < total; i++) {
+            ndjson.append(String.format("{\"name\":\"resume %03d\"}\n", i));
+        }
+        int line = "{\"name\":\"resume 000\"}\n".length();
+        Path file = dir.resolve("resume.ndjson");
+        Files.writeString(file, ndjson);
+        StudentImportCommand command = importCommand(file, 200);
+
+        List<StudentImportCommand.Segment> segments;
+        try (FileChannel channel = FileChannel.open(file)) {
+            segments = StudentImportCommand.segments(channel, 0, channel.size(), 200, false);
+        }
+        assertTrue(segments.size() > 2);
+        StudentImportCommand.Segment first = segments.get(0);
+        StudentImportCommand.Segment second = segments.get(1);
+        ImportCheckpoint checkpoint = ImportCheckpoint.open(dir.resolve("resume.ndjson.checkpoint"), ndjson.length(), 200, segments);
+        // первый кусок записан целиком, второй - на две строки, остальные не начаты
+        checkpoint.advance(first.index(), first.end());
+        checkpoint.advance(second.index(), second.start() + 2L * line);
+
+        command.run();
+
+        long skipped = first.end() / line + 2;
+        assertEquals(total - skipped, count("resume %"));
+        assertEquals(0, count("resume 000"));
+        assertEquals(0, count(String.format("resume %03d", skipped - 1)));
+        assertEquals(1, count(String.format("resume %03d", skipped)));
+        assertEquals(1, count(String.format("resume %03d", total - 1)));
+        assertFalse(Files.exists(dir.resolve("resume.ndjson.checkpoint")));
+    }
+
+    @Test
+    void testCheckpointForAnotherSegmentSizeIsRejected() throws Exception {
+        Path file = dir.resolve("mismatch.ndjson");
+        Files.writeString(file, "{\"name\":\"mismatch 1\"}\n{\"name\":\"mismatch 2\"}\n");
+        List<StudentImportCommand.Segment> segments;
+        try (FileChannel channel = FileChannel.open(file)) {
+            segments = StudentImportCommand.segments(channel, 0, channel.size(), 100, false);
+        }
+        ImportCheckpoint.open(dir.resolve("mismatch.ndjson.checkpoint"), Files.size(file), 100, segments)
+                .advance(0, 0);
+
+        assertThrows(IllegalStateException.class, () -> importCommand(file, 200).run());
+        assertEquals(0, count("mismatch %"));
+        assertTrue(Files.exists(dir.resolve("mismatch.ndjson.checkpoint")));
+    }
+
+    @Test
+    void testImportModeFromAnyPropertySourceDisablesServers() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("student.bulk-import.file", "students.csv")
+                .withProperty("spring.autoconfigure.exclude", "some.Configuration");
+        new BulkImportEnvironmentPostProcessor().postProcessEnvironment(environment, new SpringApplication());
+
+        assertEquals("none", environment.getProperty("spring.main.web-application-type"));
+        assertTrue(environment.getProperty("spring.autoconfigure.exclude").startsWith("some.Configuration,"));
+    }
+
+    private StudentImportCommand importCommand(Path file, long segmentSize) {
+        StudentProperties properties = new StudentProperties();
+        properties.getBulkImport().setFile(file);
+        properties.getBulkImport().setSegmentSize(DataSize.ofBytes(segmentSize));
+        properties.getBulkImport().setBatchSize(3);
+        properties.getBulkImport().setParallelism(2);
+        return new StudentImportCommand(repository, properties, meterRegistry, Optional.empty());
+    }
+
+    private long count(String namePattern) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("select count(*) from student where name like ?")) {
+            statement.setString(1, namePattern);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+}
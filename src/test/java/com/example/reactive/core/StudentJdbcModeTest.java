@@ -0,0 +1,82 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.RepositoryWithJdbc;
+import com.example.reactive.core.repository.SearchMode;
+import com.example.reactive.core.repository.Student;
+import com.example.reactive.core.repository.StudentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest(properties = {"student.jdbc.enabled=true", "student.jdbc.pool-size=4", "student.stream.fetch-size=2"})
+public class StudentJdbcModeTest {
+
+    @Autowired
+    StudentService studentService;
+
+    @Autowired
+    RepositoryWithJdbc repositoryWithJdbc;
+
+    @Autowired
+    StudentRepository studentRepository;
+
+    @Test
+    void testServiceGoesThroughJdbc() {
+        Student saved = studentService.addNewStudent(new Student(null, "jdbc single")).block();
+        assertNotNull(saved.getId());
+        StepVerifier.create(repositoryWithJdbc.findById(saved.getId()))
+                .expectNext(saved)
+                .verifyComplete();
+
+        List<Student> batch = studentService.addNewStudents(Flux.just(new Student(null, "jdbc a"), new Student(null, "jdbc b")))
+                .collectList()
+                .block();
+        assertEquals(List.of("jdbc a", "jdbc b"), batch.stream().map(Student::getName).toList());
+
+        StepVerifier.create(studentService.updateStudent(saved.getId(), new Student(null, "jdbc renamed")))
+                .expectNext(new Student(saved.getId(), "jdbc renamed"))
+                .verifyComplete();
+        StepVerifier.create(studentService.searchStudents("JDBC REN", SearchMode.PREFIX, 10).map(Student::getName))
+                .expectNext("jdbc renamed")
+                .verifyComplete();
+        // курсор с fetch-size=2 и запросом по одному элементу
+        StepVerifier.create(studentService.streamStudents(null).map(Student::getName), 1)
+                .expectNext("jdbc renamed")
+                .thenRequest(2)
+                .expectNext("jdbc a", "jdbc b")
+                .thenRequest(1)
+                .verifyComplete();
+
+        StepVerifier.create(studentService.deleteStudent(saved.getId()))
+                .expectNext(saved.getId())
+                .verifyComplete();
+        StepVerifier.create(studentService.deleteStudent(saved.getId()))
+                .verifyComplete();
+    }
+
+    @Test
+    void testErrorsMatchR2dbc() {
+        // not null - тот же тип, что отдает R2DBC-хранилище, а не общий сбой доступа к базе
+        StepVerifier.create(repositoryWithJdbc.save(new Student(null, null)))
+                .expectError(DataIntegrityViolationException.class)
+                .verify();
+        StepVerifier.create(studentRepository.save(new Student(null, null)))
+                .expectError(DataIntegrityViolationException.class)
+                .verify();
+    }
+
+    @Test
+    void testR2dbcUrlIsTranslated() {
+        assertEquals("jdbc:postgresql://localhost:5432/db",
+                StudentJdbcConfig.toJdbcUrl("r2dbc:pool:postgresql://localhost:5432/db?maxSize=5"));
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.Student;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StudentJsonEncoderTest {
+
+    private final StudentJsonEncoder encoder = new StudentJsonEncoder();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final List<Student> students = List.of(
+            new Student(1L, "plain"),
+            new Student(-42L, "quote \" backslash \\ slash /"),
+            new Student(Long.MAX_VALUE, "ctrl \n\r\t\b\f \u0001 \u001f"),
+            new Student(Long.MIN_VALUE, "кириллица ü € 漢字 😀"),
+            new Student(null, null),
+            new Student(0L, "x".repeat(100_000)));
+
+    @Test
+    void testSameOutputAsJackson() throws Exception {
+        for (Student student : students) {
+            assertEquals(objectMapper.writeValueAsString(student), encode(Mono.just(student), MediaType.APPLICATION_JSON));
+        }
+        assertEquals(objectMapper.writeValueAsString(students), encode(Mono.just(students), MediaType.APPLICATION_JSON));
+        assertEquals(objectMapper.writeValueAsString(students), encode(Flux.fromIterable(students), MediaType.APPLICATION_JSON));
+        assertEquals("[]", encode(Flux.empty(), MediaType.APPLICATION_JSON));
+
+        StringBuilder ndjson = new StringBuilder();
+        for (Student student : students) {
+            ndjson.append(objectMapper.writeValueAsString(student)).append('\n');
+        }
+        assertEquals(ndjson.toString(), encode(Flux.fromIterable(students), MediaType.APPLICATION_NDJSON));
+    }
+
+    @Test
+    void testLoneSurrogateIsEscaped() throws Exception {
+        String json = encode(Mono.just(new Student(1L, "a\uD800b")), MediaType.APPLICATION_JSON);
+
+        assertEquals("{\"id\":1,\"name\":\"a\\uD800b\"}", json);
+        assertEquals("a\uD800b", objectMapper.readValue(json, Student.class).getName());
+    }
+
+    @Test
+    void testCanEncode() {
+        assertTrue(encoder.canEncode(ResolvableType.forClass(Student.class), MediaType.APPLICATION_NDJSON));
+        assertTrue(encoder.canEncode(ResolvableType.forClassWithGenerics(List.class, Student.class), null));
+        assertFalse(encoder.canEncode(ResolvableType.forClassWithGenerics(List.class, String.class), MediaType.APPLICATION_JSON));
+        assertFalse(encoder.canEncode(ResolvableType.forClass(Student.class), MediaType.TEXT_EVENT_STREAM));
+        assertFalse(encoder.canEncode(ResolvableType.forClass(Student.class),
+                new MimeType("application", "json", StandardCharsets.UTF_16)));
+    }
+
+    private String encode(org.reactivestreams.Publisher<?> input, MediaType mediaType) {
+        Flux<DataBuffer> buffers = encoder.encode(input, DefaultDataBufferFactory.sharedInstance,
+                ResolvableType.forClass(Student.class), mediaType, null);
+        DataBuffer joined = DataBufferUtils.join(buffers).block();
+        return joined == null ? "" : joined.toString(StandardCharsets.UTF_8);
+    }
+
+}
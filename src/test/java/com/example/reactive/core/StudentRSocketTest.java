@@ -0,0 +1,77 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.SearchMode;
+import com.example.reactive.core.repository.Student;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.rsocket.server.LocalRSocketServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = "spring.rsocket.server.port=0")
+public class StudentRSocketTest {
+
+    @LocalRSocketServerPort
+    int port;
+
+    StudentWebClient client;
+
+    @BeforeEach
+    void setUp() {
+        client = new StudentWebClient(StudentWebClient.Options.builder()
+                .rsocketUri("tcp://localhost:" + port)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+    }
+
+    @Test
+    void testUpsertChannelAndGet() {
+        List<Student> created = client.createAll(Flux.range(0, 3).map(i -> new Student(null, "rsocket " + i)))
+                .collectList()
+                .block();
+        assertEquals(3, created.size());
+
+        Student renamed = new Student(created.get(0).getId(), "rsocket renamed");
+        List<Student> upserted = client.upsertAll(Flux.just(renamed, new Student(null, "rsocket new")), 1)
+                .collectList()
+                .block();
+        assertEquals(2, upserted.size());
+
+        StepVerifier.create(client.get(renamed.getId()))
+                .expectNext(renamed)
+                .verifyComplete();
+        StepVerifier.create(client.get(Long.MAX_VALUE))
+                .verifyComplete();
+    }
+
+    @Test
+    void testStreamHonorsRequestN() {
+        client.createAll(Flux.range(0, 50).map(i -> new Student(null, "rsocket stream"))).blockLast();
+
+        StepVerifier.create(client.findByName("rsocket stream"), 0)
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenRequest(5)
+                .expectNextCount(5)
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenRequest(45)
+                .expectNextCount(45)
+                .verifyComplete();
+
+        StepVerifier.create(client.search("RSOCKET STR", SearchMode.PREFIX).take(3))
+                .expectNextCount(3)
+                .verifyComplete();
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.Student;
+import com.example.reactive.core.repository.StudentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import io.zonky.test.db.postgres.embedded.LiquibasePreparer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import reactor.core.publisher.Mono;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Primary - обычная тестовая база, "реплика" - второй встроенный Postgres с той же схемой, но своими данными,
+ * поэтому по результату чтения видно, с какого сервера оно пришло. Реплику в конце останавливает
+ * {@link #testReadsGoToReplicaAndFallBackToPrimary}, поэтому он идет последним.
+ */
+@SpringBootTest(properties = {"student.cache.enabled=false", "student.replicas.health-check-interval=100ms"})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class StudentReplicaRoutingTest {
+
+    static EmbeddedPostgres replica;
+
+    @Autowired
+    StudentService studentService;
+
+    @Autowired
+    StudentRepository studentRepository;
+
+    @DynamicPropertySource
+    static void replicaProperties(DynamicPropertyRegistry registry) throws Exception {
+        replica = EmbeddedPostgres.start();
+        LiquibasePreparer.forClasspathLocation("db/changelog/changelog.xml").prepare(replica.getPostgresDatabase());
+        try (Connection connection = replica.getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("insert into student (id, name) values (1000000, 'only on replica')");
+        }
+        registry.add("student.replicas.urls", () -> "r2dbc:postgresql://localhost:" + replica.getPort() + "/postgres");
+        registry.add("student.replicas.username", () -> "postgres");
+    }
+
+    @AfterAll
+    static void stopReplica() throws Exception {
+        replica.close();
+    }
+
+    @Test
+    @Order(3)
+    void testReadsGoToReplicaAndFallBackToPrimary() throws Exception {
+        awaitTrue(() -> studentService.findStudentsByName("only on replica").count().block() == 1);
+
+        Student written = studentService.addNewStudent(new Student(null, "written to primary")).block();
+        assertEquals(0, studentService.findStudentsByName("written to primary").count().block());
+        assertEquals(written, studentRepository.findById(written.getId()).block());
+
+        replica.close();
+        awaitTrue(() -> studentService.findStudentsByName("written to primary").count().block() == 1);
+        assertEquals(0, studentService.findStudentsByName("only on replica").count().block());
+    }
+
+    @Test
+    @Order(1)
+    void testReadYourWritesWindowOpensOnlyForMarkedWrites() throws Exception {
+        ReplicaPools pools = replicaPools();
+        try {
+            awaitTrue(() -> pools.replicas().get(0).healthy);
+            ReadWriteRoutingConnectionFactory routing = new ReadWriteRoutingConnectionFactory(
+                    pools.replicas().get(0).pool, pools, Duration.ofSeconds(30));
+
+            assertEquals("replica-0", lookup(routing, ReadRouting::replica));
+            assertEquals(ReadWriteRoutingConnectionFactory.PRIMARY, lookup(routing, UnaryOperator.identity()));
+            assertEquals("replica-0", lookup(routing, ReadRouting::replica));
+
+            assertEquals(ReadWriteRoutingConnectionFactory.PRIMARY, lookup(routing, ReadRouting::write));
+            assertEquals(ReadWriteRoutingConnectionFactory.PRIMARY, lookup(routing, ReadRouting::replica));
+        } finally {
+            pools.dispose();
+        }
+    }
+
+    @Test
+    @Order(2)
+    void testReplicaPoolsAreClosedWithTheContext() {
+        ReplicaPools pools;
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            StudentProperties properties = new StudentProperties();
+            properties.getReplicas().setUrls(List.of("r2dbc:postgresql://localhost:" + replica.getPort() + "/postgres"));
+            properties.getReplicas().setUsername("postgres");
+            context.registerBean(StudentProperties.class, () -> properties);
+            context.registerBean(R2dbcProperties.class);
+            context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+            context.register(ConnectionPoolConfig.class);
+            context.refresh();
+            pools = context.getBean(ReplicaPools.class);
+            assertFalse(pools.isDisposed());
+        }
+        assertTrue(pools.isDisposed());
+        assertTrue(pools.replicas().get(0).pool.isDisposed());
+    }
+
+    private static ReplicaPools replicaPools() {
+        StudentProperties.Replicas properties = new StudentProperties.Replicas();
+        properties.setHealthCheckInterval(Duration.ofMillis(100));
+        return new ReplicaPools(properties, new SimpleMeterRegistry(), List.of(ConnectionPoolConfig.pool(
+                "r2dbc:postgresql://localhost:" + replica.getPort() + "/postgres", "postgres", null, new R2dbcProperties())));
+    }
+
+    /**
+     * Куда пошло бы соединение, взятое внутри конвейера с пометкой {@code mark}.
+     */
+    private static Object lookup(ReadWriteRoutingConnectionFactory routing, UnaryOperator<Mono<Object>> mark) {
+        return mark.apply(Mono.defer(routing::determineCurrentLookupKey)).block();
+    }
+
+    private static void awaitTrue(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            try {
+                if (condition.get()) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                // реплика только что упала, а проверка здоровья еще не заметила
+            }
+            Thread.sleep(50);
+        }
+        assertTrue(condition.get());
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.Student;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+@SpringBootTest
+@AutoConfigureWebTestClient
+public class StudentSearchTest {
+
+    @Autowired
+    WebTestClient webClient;
+
+    @Test
+    void testSearchModes() {
+        webClient.post().uri("/students/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(Flux.just(new Student(null, "Search Alpha"), new Student(null, "search_beta")), Student.class)
+                .exchange()
+                .expectStatus().isOk();
+
+        webClient.get().uri("/students/search?q=SEARCH&mode=prefix")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Student.class).hasSize(2);
+
+        // "_" в строке поиска не должен работать как шаблон LIKE
+        webClient.get().uri("/students/search?q=search_&mode=prefix")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Student.class).hasSize(1);
+
+        webClient.get().uri("/students/search?q=search alpha&mode=exact")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].name").isEqualTo("Search Alpha");
+
+        webClient.get().uri("/students/search?q=Serch Alpa&mode=fuzzy")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].name").isEqualTo("Search Alpha");
+    }
+
+}
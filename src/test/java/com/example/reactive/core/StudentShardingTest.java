@@ -0,0 +1,128 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.SearchMode;
+import com.example.reactive.core.repository.Student;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import reactor.core.publisher.Flux;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Два шарда - два отдельных встроенных Postgres без схемы: ее накатывает само приложение.
+ */
+@SpringBootTest(properties = {"student.cache.enabled=false", "student.shards.timeout=1s"})
+public class StudentShardingTest {
+
+    static final List<EmbeddedPostgres> shards = new ArrayList<>();
+
+    @Autowired
+    StudentService studentService;
+
+    @DynamicPropertySource
+    static void shardProperties(DynamicPropertyRegistry registry) throws Exception {
+        shards.add(EmbeddedPostgres.start());
+        shards.add(EmbeddedPostgres.start());
+        registry.add("student.shards.urls", () -> String.join(",", shards.stream()
+                .map(shard -> "r2dbc:postgresql://localhost:" + shard.getPort() + "/postgres")
+                .toList()));
+        registry.add("student.shards.username", () -> "postgres");
+    }
+
+    @AfterAll
+    static void stopShards() throws Exception {
+        for (EmbeddedPostgres shard : shards) {
+            shard.close();
+        }
+    }
+
+    @Test
+    void testStudentsAreSpreadByIdAndMergedInOrder() throws Exception {
+        List<Student> added = studentService.addNewStudents(Flux.range(0, 10).map(i -> new Student(null, "sharded " + i)))
+                .collectList().block();
+        added.add(studentService.addNewStudent(new Student(null, "sharded single")).block());
+
+        for (int shard = 0; shard < shards.size(); shard++) {
+            List<Long> ids = ids(shards.get(shard));
+            assertTrue(!ids.isEmpty());
+            for (Long id : ids) {
+                assertEquals(shard, id % shards.size());
+            }
+        }
+
+        Student first = added.get(0);
+        assertEquals(first, studentService.findStudentById(first.getId()).block());
+        assertEquals("renamed", studentService.updateStudent(first.getId(), new Student(null, "renamed")).block().getName());
+        assertEquals(first.getId(), studentService.deleteStudent(first.getId()).block());
+        assertNull(studentService.findStudentById(first.getId()).block());
+
+        List<Long> expected = added.stream().skip(1).map(Student::getId).sorted().toList();
+        assertEquals(expected, studentService.findStudentsByName(null).map(Student::getId).collectList().block());
+        assertEquals(expected.subList(2, 6), studentService.findStudentsPage(null, expected.get(1), 4)
+                .map(Student::getId).collectList().block());
+        assertEquals(List.of("sharded 1", "sharded 2", "sharded 3", "sharded 4", "sharded 5"),
+                studentService.searchStudents("sharded", SearchMode.PREFIX, 5).map(Student::getName).collectList().block());
+        Long version = studentService.tableVersion().block();
+        studentService.addNewStudent(new Student(null, "one more")).block();
+        assertTrue(studentService.tableVersion().block() > version);
+    }
+
+    @Test
+    void testSlowShardFailsTheWholeQuery() throws Exception {
+        try (Connection connection = shards.get(1).getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            statement.execute("lock table student in access exclusive mode");
+            assertThrows(QueryTimeoutException.class, () -> studentService.findStudentsByName(null).blockLast());
+            connection.rollback();
+        }
+    }
+
+    @Test
+    void testAlignedSequenceIsLeftAloneRightAfterSetval() throws Exception {
+        try (Connection writer = shards.get(0).getPostgresDatabase().getConnection();
+             Connection aligner = shards.get(0).getPostgresDatabase().getConnection();
+             Statement writes = writer.createStatement();
+             Statement statement = aligner.createStatement()) {
+            statement.execute("select setval(pg_get_serial_sequence('student', 'id'), 1000000, false)");
+            writer.setAutoCommit(false);
+            writes.execute("lock table student in row exclusive mode");
+            statement.execute("set lock_timeout = '1s'");
+            // уже выровненная последовательность не должна ждать блокировку таблицы
+            statement.execute("select student_align_id_sequence(0, 2)");
+            writer.rollback();
+            try (ResultSet rs = statement.executeQuery("select nextval(pg_get_serial_sequence('student', 'id'))")) {
+                rs.next();
+                assertEquals(1000000, rs.getLong(1));
+            }
+        }
+    }
+
+    private static List<Long> ids(EmbeddedPostgres shard) throws Exception {
+        try (Connection connection = shard.getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select id from student")) {
+            List<Long> ids = new ArrayList<>();
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+            return ids;
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.RepositoryWithDatabaseClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Таймауты запросов ко всем шардам без баз: запрос подменяется потоком, который и изображает шард.
+ */
+public class StudentShardsTest {
+
+    private final RepositoryWithDatabaseClient first = new RepositoryWithDatabaseClient(null);
+    private final StudentShards shards = new StudentShards(List.of(first, new RepositoryWithDatabaseClient(null)),
+            Duration.ofMillis(300), () -> {
+    });
+
+    @Test
+    void testStreamFailsWhenShardStallsMidway() {
+        StepVerifier.create(shards.merge(Comparator.<Integer>naturalOrder(),
+                        shard -> shard == first ? Flux.range(0, 3) : Flux.concat(Flux.just(1), Flux.never())))
+                .expectNext(0, 1, 1)
+                .expectError(QueryTimeoutException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testStreamWaitsForSlowSubscriber() {
+        StepVerifier.create(shards.merge(Comparator.<Integer>naturalOrder(), shard -> Flux.range(0, 1000)), 1)
+                .expectNext(0)
+                .thenAwait(Duration.ofSeconds(1))
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextCount(1999)
+                .verifyComplete();
+    }
+
+    @Test
+    void testBoundedQueryHasOneDeadline() {
+        // каждая строка приходит быстрее таймаута, но весь ответ - нет
+        StepVerifier.create(shards.mergeFirst(Comparator.<Long>naturalOrder(), 20,
+                        shard -> Flux.interval(Duration.ofMillis(100)).take(10)))
+                .thenConsumeWhile(row -> true)
+                .expectError(QueryTimeoutException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+}
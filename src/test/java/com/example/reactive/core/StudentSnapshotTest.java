@@ -0,0 +1,69 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.Student;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+@SpringBootTest(properties = "student.snapshot.enabled=true")
+public class StudentSnapshotTest {
+
+    @Autowired
+    StudentService studentService;
+
+    @Autowired
+    StudentSnapshotService studentSnapshotService;
+
+    @Test
+    void testSnapshotFollowsChanges() {
+        Student created = studentService.addNewStudent(new Student(null, "snapshot student")).block();
+
+        // снимок догоняет базу асинхронно, поэтому ждем, пока изменение до него дойдет
+        StepVerifier.create(eventually(() -> studentService.findStudentsByName("snapshot student").count()
+                        .filter(count -> count == 1)))
+                .expectNext(1L)
+                .verifyComplete();
+
+        studentService.updateStudent(created.getId(), new Student(null, "renamed snapshot student")).block();
+        StepVerifier.create(eventually(() -> studentService.findStudentById(created.getId())
+                        .filter(s -> s.getName().equals("renamed snapshot student"))))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        studentService.deleteStudent(created.getId()).block();
+        StepVerifier.create(eventually(() -> Mono.justOrEmpty(studentSnapshotService.current())
+                        .filter(snapshot -> snapshot.find(created.getId()) == null)))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    void testSnapshotRereadsBatchTooLargeForNotification() {
+        // 500 строк в одном insert не влезают в payload, снимок перечитывает диапазон id
+        List<Student> created = studentService.addNewStudents(Flux.range(0, 500).map(i -> new Student(null, "snapshot batch " + i)))
+                .collectList().block();
+        Student last = created.get(created.size() - 1);
+        StepVerifier.create(eventually(() -> Mono.justOrEmpty(studentSnapshotService.current())
+                        .filter(snapshot -> snapshot.find(last.getId()) != null)))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(eventually(() -> studentService.findStudentsByName("snapshot batch 0").count()
+                        .filter(count -> count == 1)))
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
+    private static <T> Mono<T> eventually(Supplier<Mono<T>> probe) {
+        return Mono.defer(probe)
+                .repeatWhenEmpty(attempts -> attempts.delayElements(Duration.ofMillis(50)))
+                .timeout(Duration.ofSeconds(10));
+    }
+
+}
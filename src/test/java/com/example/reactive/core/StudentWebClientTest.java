@@ -0,0 +1,79 @@
+package com.example.reactive.core;
+
+import com.example.reactive.core.repository.Student;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class StudentWebClientTest {
+
+    @LocalServerPort
+    int port;
+
+    StudentWebClient client;
+
+    @BeforeEach
+    void setUp() {
+        client = new StudentWebClient(StudentWebClient.Options.builder()
+                .baseUrl("http://localhost:" + port)
+                .idsPerRequest(4)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+    }
+
+    @Test
+    void testCreateAllStreamsBackCreated() {
+        List<String> names = IntStream.range(0, 25).mapToObj(i -> "web client " + i).toList();
+
+        List<Student> created = client.createAll(Flux.fromIterable(names).map(name -> new Student(null, name)))
+                .collectList()
+                .block();
+
+        assertEquals(names.size(), created.size());
+        created.forEach(student -> assertNotNull(student.getId()));
+        assertEquals(new HashSet<>(names), new HashSet<>(created.stream().map(Student::getName).toList()));
+        assertEquals(created.size(), new HashSet<>(created.stream().map(Student::getId).toList()).size());
+    }
+
+    @Test
+    void testGetManyInBatches() {
+        List<Student> created = client.createAll(Flux.range(0, 10).map(i -> new Student(null, "get many " + i)))
+                .collectList()
+                .block();
+        List<Long> ids = new ArrayList<>(created.stream().map(Student::getId).toList());
+        Collections.shuffle(ids);
+        // несуществующий id в середине пачки просто пропускается
+        ids.add(5, Long.MAX_VALUE);
+
+        List<Long> ordered = client.getMany(Flux.fromIterable(ids), 3, true)
+                .map(Student::getId)
+                .collectList()
+                .block();
+        List<Long> expected = new ArrayList<>(ids);
+        expected.remove(Long.MAX_VALUE);
+        assertEquals(expected, ordered);
+
+        List<Student> unordered = client.getMany(Flux.fromIterable(ids), 3, false)
+                .collectList()
+                .block();
+        assertEquals(new HashSet<>(created), new HashSet<>(unordered));
+    }
+
+}
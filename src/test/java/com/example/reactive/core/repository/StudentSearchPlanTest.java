@@ -0,0 +1,53 @@
+package com.example.reactive.core.repository;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Планы тех же запросов, что выполняет {@link RepositoryWithDatabaseClient#search}, с теми же параметрами.
+ */
+@SpringBootTest
+public class StudentSearchPlanTest {
+
+    @Autowired
+    ConnectionFactory connectionFactory;
+
+    @Test
+    void testPrefixSearchUsesLowerNameIndex() {
+        assertThat(plan(RepositoryWithDatabaseClient.PREFIX_SEARCH, "abc%"))
+                .contains("student_name_lower_idx");
+    }
+
+    @Test
+    void testFuzzySearchUsesTrigramIndex() {
+        assertThat(plan(RepositoryWithDatabaseClient.FUZZY_SEARCH, "abc"))
+                .contains("student_name_trgm_idx");
+    }
+
+    /**
+     * В тестовой таблице мало строк, и без enable_seqscan = off планировщик честно выбрал бы seq scan;
+     * {@code set local} действует до конца транзакции.
+     */
+    private String plan(String sql, String query) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        return client.sql("set local enable_seqscan = off").then()
+                .thenMany(client.sql("explain " + sql)
+                        .bind("query", query)
+                        .bind("limit", 10)
+                        .map(row -> row.get(0, String.class))
+                        .all())
+                .as(TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory))::transactional)
+                .collect(Collectors.joining("\n"))
+                .block();
+    }
+
+}
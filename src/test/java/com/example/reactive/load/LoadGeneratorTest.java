@@ -0,0 +1,86 @@
+package com.example.reactive.load;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LoadGeneratorTest {
+
+    @Test
+    void testParseMix() {
+        assertEquals(Map.of(Operation.GET, 60, Operation.LIST, 10, Operation.DELETE, 5),
+                LoadGenerator.parseMix("get=60, List = 10,DELETE=5"));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.parseMix("fetch=1"));
+
+        // в турецкой локали "list".toUpperCase() дает "LİST"
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            assertEquals(Map.of(Operation.LIST, 1), LoadGenerator.parseMix("list=1"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    void testOpenModelDoesNotWaitForResponses() {
+        // сервер отвечает дольше, чем длится весь прогон
+        LoadGenerator generator = generator(() -> Mono.delay(Duration.ofMillis(500)));
+        long start = System.nanoTime();
+        generator.runAtFixedRate(100, start, start + TimeUnit.MILLISECONDS.toNanos(300));
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2), "starts waited for responses");
+        generator.awaitInFlight(Duration.ofSeconds(5));
+        Map<String, Object> report = generator.stats(Operation.GET).report(1);
+        assertEquals(30L, report.get("count"));
+        assertTrue((double) report.get("p50Millis") >= 450);
+    }
+
+    @Test
+    void testLatencyCountsFromIntendedStart() {
+        // генератор один раз встал на 200 мс, запросы, которые должны были стартовать за это время,
+        // получают задержку от запланированного момента, а не от фактического
+        AtomicBoolean stalled = new AtomicBoolean();
+        LoadGenerator generator = generator(() -> {
+            if (stalled.compareAndSet(false, true)) {
+                sleep(200);
+            }
+            return Mono.empty();
+        });
+        long start = System.nanoTime();
+        generator.runAtFixedRate(100, start, start + TimeUnit.MILLISECONDS.toNanos(400));
+        generator.awaitInFlight(Duration.ofSeconds(5));
+
+        Map<String, Object> report = generator.stats(Operation.GET).report(1);
+        assertEquals(40L, report.get("count"));
+        assertTrue((double) report.get("maxMillis") >= 180);
+    }
+
+    private static LoadGenerator generator(Supplier<Mono<?>> response) {
+        return new LoadGenerator(Map.of("mix", "get=1")) {
+            @Override
+            Mono<?> execute(Operation operation) {
+                return response.get();
+            }
+        };
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}